@@ -0,0 +1,49 @@
+// Load test of the /match and /detailed endpoints, run once per execution mode and compare the summaries:
+//   VIRTUAL_THREADS_ENABLED=false -> k6 run -e BASE_URL=... -e TOKEN=... -e USER_IDS=... -e OFFER_ID=... --summary-export=platform.json match-detailed.js
+//   VIRTUAL_THREADS_ENABLED=true  -> same command with --summary-export=virtual.json
+import http from 'k6/http';
+import { check } from 'k6';
+import { Trend } from 'k6/metrics';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080';
+const TOKEN = __ENV.TOKEN;
+const USER_IDS = (__ENV.USER_IDS || '').split(',').filter((id) => id.length > 0);
+const OFFER_ID = __ENV.OFFER_ID;
+const MAX_VUS = parseInt(__ENV.MAX_VUS || '2000', 10);
+
+const matchDuration = new Trend('match_duration', true);
+const detailedDuration = new Trend('detailed_duration', true);
+
+export const options = {
+    scenarios: {
+        ramp: {
+            executor: 'ramping-vus',
+            startVUs: 0,
+            stages: [
+                { duration: '30s', target: MAX_VUS / 4 },
+                { duration: '1m', target: MAX_VUS },
+                { duration: '2m', target: MAX_VUS },
+                { duration: '30s', target: 0 },
+            ],
+        },
+    },
+    thresholds: {
+        http_req_failed: ['rate<0.01'],
+    },
+};
+
+const params = { headers: { Authorization: `Bearer ${TOKEN}` } };
+
+export default function () {
+    // Mostly profile reads, like recruiters browsing candidates
+    if (OFFER_ID && Math.random() < 0.3) {
+        const response = http.get(`${BASE_URL}/api/v1/user/match/${OFFER_ID}`, params);
+        matchDuration.add(response.timings.duration);
+        check(response, { 'match 200': (r) => r.status === 200 });
+    } else {
+        const id = USER_IDS[Math.floor(Math.random() * USER_IDS.length)];
+        const response = http.get(`${BASE_URL}/api/v1/user/detailed/${id}`, params);
+        detailedDuration.add(response.timings.duration);
+        check(response, { 'detailed 200': (r) => r.status === 200 });
+    }
+}
@@ -0,0 +1,178 @@
+package fr.polytech.Util;
+
+import fr.polytech.model.AvailabilityDTO;
+import fr.polytech.model.request.UpdateDTO;
+import org.keycloak.representations.idm.UserRepresentation;
+
+import java.util.*;
+
+import static fr.polytech.constant.Roles.CANDIDATE;
+import static fr.polytech.constant.Roles.RECRUITER;
+
+/**
+ * Deterministic synthetic realm used by the benchmarks.
+ * Users are 80% candidates and 20% recruiters, with attribute maps shaped like the ones stored in Keycloak.
+ */
+public class SyntheticRealm {
+
+    public static final String[] PLACES = {"Montpellier", "Nice", "Chamonix", "Biarritz", "Annecy", "Marseille", "La Rochelle", "Ajaccio", "Val Thorens", "Arcachon"};
+
+    private static final String[] FIRST_NAMES = {"Romain", "Lorenzo", "Camille", "Léa", "Hugo", "Manon", "Jérôme", "Inès", "Noé", "Chloé"};
+    private static final String[] LAST_NAMES = {"Frezier", "Italiano", "Martin", "Bernard", "Dubois", "Lefèvre", "Moreau", "Girard", "Roux", "Fournier"};
+
+    /**
+     * First day of the generated availabilities, 2024-01-01
+     */
+    public static final long SEASON_START = 1704067200000L;
+    public static final long DAY_MS = 24 * 3600 * 1000L;
+
+    private final Random random;
+
+    /**
+     * Create a realm generator.
+     *
+     * @param seed Seed of the generator, the same seed always gives the same realm
+     */
+    public SyntheticRealm(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Generate the users of a realm.
+     *
+     * @param size Number of users
+     * @return List of UserRepresentation
+     */
+    public List<UserRepresentation> users(int size) {
+        List<UserRepresentation> users = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            users.add(user(i, i % 5 == 0 ? RECRUITER : CANDIDATE));
+        }
+        return users;
+    }
+
+    /**
+     * Generate a user.
+     *
+     * @param index Index of the user in the realm, used for unique names
+     * @param role  Role of the user
+     * @return UserRepresentation
+     */
+    public UserRepresentation user(int index, String role) {
+        UserRepresentation user = new UserRepresentation();
+        user.setId(uuid().toString());
+        user.setFirstName(FIRST_NAMES[random.nextInt(FIRST_NAMES.length)]);
+        user.setLastName(LAST_NAMES[random.nextInt(LAST_NAMES.length)]);
+        user.setUsername("user" + index);
+        user.setEmail("user" + index + "@seasonsforce.fr");
+        user.setEnabled(true);
+
+        Map<String, List<String>> attributes = new HashMap<>();
+        attributes.put("role", List.of(role));
+        attributes.put("birthdate", List.of(new Date(random.nextLong(0, 1_000_000_000_000L)).toString()));
+        attributes.put("citizenship", List.of("French"));
+        attributes.put("phone", List.of(String.format("06%08d", random.nextInt(100_000_000))));
+        attributes.put("addressId", List.of(uuid().toString()));
+        attributes.put("profilePictureUrl", List.of("http://minio:9000/profile-pictures/" + user.getId() + ".jpg"));
+        attributes.put("gender", List.of(String.valueOf(random.nextInt(3))));
+        attributes.put("isRegistered", List.of("true"));
+        attributes.put("toBeRemoved", List.of("false"));
+
+        if (CANDIDATE.equals(role)) {
+            attributes.put("cvUrl", List.of("http://minio:9000/cvs/" + user.getId() + ".pdf"));
+            attributes.put("shortBio", List.of("Seasonal worker looking for a job in " + PLACES[random.nextInt(PLACES.length)]));
+            attributes.put("referenceIdList", uuids(random.nextInt(4)));
+            attributes.put("experienceIdList", uuids(random.nextInt(8)));
+            attributes.put("availabilityIdList", uuids(1 + random.nextInt(3)));
+            attributes.put("reviewIdList", uuids(random.nextInt(6)));
+        } else {
+            attributes.put("companyId", List.of(uuid().toString()));
+            attributes.put("planId", List.of(uuid().toString()));
+            attributes.put("offerIdList", uuids(random.nextInt(10)));
+            attributes.put("paymentIdList", uuids(random.nextInt(5)));
+        }
+        user.setAttributes(attributes);
+        return user;
+    }
+
+    /**
+     * Generate an update body changing a few fields of a user, the way the front end sends it.
+     *
+     * @param user User to update
+     * @return UpdateDTO
+     */
+    public UpdateDTO updateBody(UserRepresentation user) {
+        UpdateDTO update = new UpdateDTO();
+        update.setEmail(user.getEmail());
+        update.setFirstName(user.getFirstName());
+        update.setLastName(user.getLastName());
+        update.setUsername(user.getUsername());
+        update.setBirthdate(new Date(random.nextLong(0, 1_000_000_000_000L)));
+        update.setPhone(String.format("06%08d", random.nextInt(100_000_000)));
+        update.setIsRegistered(true);
+        update.setToBeRemoved(false);
+        if (CANDIDATE.equals(user.getAttributes().get("role").get(0))) {
+            update.setShortBio("Updated bio");
+            update.setAvailabilityIdList(toUuids(user.getAttributes().get("availabilityIdList")));
+            update.setExperienceIdList(toUuids(user.getAttributes().get("experienceIdList")));
+        } else {
+            update.setOfferIdList(toUuids(user.getAttributes().get("offerIdList")));
+        }
+        return update;
+    }
+
+    /**
+     * Generate the availabilities of a candidate, one per id of its availability id list.
+     *
+     * @param candidate Candidate
+     * @return List of AvailabilityDTO
+     */
+    public List<AvailabilityDTO> availabilities(UserRepresentation candidate) {
+        List<AvailabilityDTO> availabilities = new ArrayList<>();
+        for (String id : candidate.getAttributes().get("availabilityIdList")) {
+            long start = SEASON_START + random.nextInt(365) * DAY_MS;
+            AvailabilityDTO availability = new AvailabilityDTO();
+            availability.setId(UUID.fromString(id));
+            availability.setJobTitle("Waiter");
+            availability.setJobCategoryId(uuid());
+            availability.setStartDate(new Date(start));
+            availability.setEndDate(new Date(start + (7 + random.nextInt(120)) * DAY_MS));
+            availability.setPlaceList(List.of(PLACES[random.nextInt(PLACES.length)], PLACES[random.nextInt(PLACES.length)]));
+            availabilities.add(availability);
+        }
+        return availabilities;
+    }
+
+    /**
+     * Generate a list of random UUIDs as strings.
+     *
+     * @param size Number of UUIDs
+     * @return List of String
+     */
+    private List<String> uuids(int size) {
+        List<String> uuids = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            uuids.add(uuid().toString());
+        }
+        return uuids;
+    }
+
+    /**
+     * Generate a UUID from the seeded generator.
+     *
+     * @return UUID
+     */
+    private UUID uuid() {
+        return new UUID(random.nextLong(), random.nextLong());
+    }
+
+    /**
+     * Convert a list of strings to a list of UUIDs.
+     *
+     * @param values List of String
+     * @return List of UUID
+     */
+    private static List<UUID> toUuids(List<String> values) {
+        return values.stream().map(UUID::fromString).toList();
+    }
+}
@@ -0,0 +1,70 @@
+package fr.polytech.Util;
+
+import fr.polytech.model.request.UpdateDTO;
+import fr.polytech.model.response.user.BaseUserResponse;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the mapping between Keycloak users and API users, over a whole synthetic realm.
+ * Each operation maps every user of the realm, as the user list and the search endpoints do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UtilsBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    private int realmSize;
+
+    private List<UserRepresentation> users;
+    private List<UpdateDTO> updateBodies;
+    private List<String> roles;
+    private List<UserRepresentation> updatedUsers;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SyntheticRealm realm = new SyntheticRealm(42);
+        users = realm.users(realmSize);
+        updateBodies = new ArrayList<>(realmSize);
+        roles = new ArrayList<>(realmSize);
+        updatedUsers = new ArrayList<>(realmSize);
+        for (UserRepresentation user : users) {
+            String role = user.getAttributes().get("role").get(0);
+            UpdateDTO updateBody = realm.updateBody(user);
+            updateBodies.add(updateBody);
+            roles.add(role);
+            updatedUsers.add(Utils.updateBodyToUserRepresentation(updateBody, role));
+        }
+    }
+
+    @Benchmark
+    public void userRepresentationToUserResponse(Blackhole blackhole) {
+        for (UserRepresentation user : users) {
+            BaseUserResponse response = Utils.userRepresentationToUserResponse(user);
+            blackhole.consume(response);
+        }
+    }
+
+    @Benchmark
+    public void updateBodyToUserRepresentation(Blackhole blackhole) {
+        for (int i = 0; i < realmSize; i++) {
+            blackhole.consume(Utils.updateBodyToUserRepresentation(updateBodies.get(i), roles.get(i)));
+        }
+    }
+
+    @Benchmark
+    public void validateAttributes() {
+        for (int i = 0; i < realmSize; i++) {
+            Utils.validateAttributes(updatedUsers.get(i), roles.get(i));
+        }
+    }
+}
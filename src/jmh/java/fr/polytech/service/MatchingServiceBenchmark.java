@@ -0,0 +1,81 @@
+package fr.polytech.service;
+
+import fr.polytech.Util.SyntheticRealm;
+import fr.polytech.Util.Utils;
+import fr.polytech.model.response.user.CandidateUserResponse;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static fr.polytech.constant.Roles.CANDIDATE;
+
+/**
+ * Benchmark of the matching of the candidates of a synthetic realm with an offer, once the availability index
+ * is loaded. The match cache is bypassed so that every operation runs the matching.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MatchingServiceBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    private int realmSize;
+
+    private final MatchingService matchingService = new MatchingService();
+
+    private List<CandidateUserResponse> candidates;
+    private Date offerStartDate;
+    private Date offerEndDate;
+    private String address;
+
+    @Setup(Level.Trial)
+    public void setUp() throws ReflectiveOperationException {
+        AvailabilityIndexService availabilityIndexService = new AvailabilityIndexService();
+        inject(availabilityIndexService, "matchCacheService", new MatchCacheService());
+        inject(matchingService, "availabilityIndexService", availabilityIndexService);
+
+        SyntheticRealm realm = new SyntheticRealm(42);
+        candidates = new ArrayList<>();
+        for (UserRepresentation user : realm.users(realmSize)) {
+            if (CANDIDATE.equals(user.getAttributes().get("role").get(0))) {
+                CandidateUserResponse candidate = (CandidateUserResponse) Utils.userRepresentationToUserResponse(user);
+                candidates.add(candidate);
+                availabilityIndexService.replaceAvailabilities(candidate.getId(), realm.availabilities(user));
+            }
+        }
+
+        offerStartDate = new Date(SyntheticRealm.SEASON_START + 180 * SyntheticRealm.DAY_MS);
+        offerEndDate = new Date(offerStartDate.getTime() + 14 * SyntheticRealm.DAY_MS);
+        address = "12 promenade des Anglais, 06000 Nice";
+
+        // Build the date index outside of the measurement
+        matchingService.getMatchingUsers(candidates, offerStartDate, offerEndDate, address);
+    }
+
+    @Benchmark
+    public List<CandidateUserResponse> getMatchingUsers() {
+        return matchingService.getMatchingUsers(candidates, offerStartDate, offerEndDate, address);
+    }
+
+    /**
+     * Set an autowired field of a service.
+     *
+     * @param target    Service to inject into
+     * @param fieldName Name of the field
+     * @param value     Value to inject
+     * @throws ReflectiveOperationException if the field does not exist
+     */
+    private static void inject(Object target, String fieldName, Object value) throws ReflectiveOperationException {
+        Field field = target.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
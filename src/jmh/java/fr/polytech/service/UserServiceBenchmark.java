@@ -0,0 +1,50 @@
+package fr.polytech.service;
+
+import fr.polytech.Util.SyntheticRealm;
+import fr.polytech.Util.Utils;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the merge of the attributes of an update with the attributes stored in Keycloak, over a whole
+ * synthetic realm.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserServiceBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    private int realmSize;
+
+    private final UserService userService = new UserService();
+
+    private List<UserRepresentation> users;
+    private List<UserRepresentation> updatedUsers;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SyntheticRealm realm = new SyntheticRealm(42);
+        users = realm.users(realmSize);
+        updatedUsers = new ArrayList<>(realmSize);
+        for (UserRepresentation user : users) {
+            String role = user.getAttributes().get("role").get(0);
+            updatedUsers.add(Utils.updateBodyToUserRepresentation(realm.updateBody(user), role));
+        }
+    }
+
+    @Benchmark
+    public void getAttributesToUpdate(Blackhole blackhole) {
+        for (int i = 0; i < realmSize; i++) {
+            blackhole.consume(userService.getAttributesToUpdate(updatedUsers.get(i), users.get(i).getAttributes()));
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package fr.polytech.Util;
+
+import fr.polytech.model.AvailabilityDTO;
+
+import java.util.*;
+
+/**
+ * Immutable index over the start and end dates of availabilities.
+ * Availabilities are sorted by start date in primitive arrays, and a max segment tree over the end dates lets
+ * a "covers [start, end]" query visit only the branches that contain a match: O(log n + k log n) for k results.
+ */
+public class AvailabilityDateIndex {
+
+    private final long[] startDates;
+    private final long[] endDates;
+    private final UUID[] candidateIds;
+    private final AvailabilityDTO[] availabilities;
+
+    /**
+     * Max end date of every node of the segment tree, the leaves start at index leafCount
+     */
+    private final long[] maxEndDates;
+    private final int leafCount;
+
+    /**
+     * Build the index.
+     *
+     * @param availabilitiesByCandidate Availabilities of every candidate, by candidate id
+     */
+    public AvailabilityDateIndex(Map<UUID, ? extends Collection<AvailabilityDTO>> availabilitiesByCandidate) {
+        List<UUID> owners = new ArrayList<>();
+        List<AvailabilityDTO> entries = new ArrayList<>();
+        availabilitiesByCandidate.forEach((candidateId, candidateAvailabilities) -> {
+            for (AvailabilityDTO availability : candidateAvailabilities) {
+                // Availabilities without dates can never match an offer
+                if (availability.getStartDate() != null && availability.getEndDate() != null) {
+                    owners.add(candidateId);
+                    entries.add(availability);
+                }
+            }
+        });
+
+        Integer[] order = new Integer[entries.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> entries.get(i).getStartDate().getTime()));
+
+        int size = order.length;
+        startDates = new long[size];
+        endDates = new long[size];
+        candidateIds = new UUID[size];
+        availabilities = new AvailabilityDTO[size];
+        for (int i = 0; i < size; i++) {
+            AvailabilityDTO availability = entries.get(order[i]);
+            startDates[i] = availability.getStartDate().getTime();
+            endDates[i] = availability.getEndDate().getTime();
+            candidateIds[i] = owners.get(order[i]);
+            availabilities[i] = availability;
+        }
+
+        int leaves = 1;
+        while (leaves < size) {
+            leaves <<= 1;
+        }
+        leafCount = leaves;
+        maxEndDates = new long[2 * leaves];
+        Arrays.fill(maxEndDates, Long.MIN_VALUE);
+        System.arraycopy(endDates, 0, maxEndDates, leaves, size);
+        for (int node = leaves - 1; node > 0; node--) {
+            maxEndDates[node] = Math.max(maxEndDates[2 * node], maxEndDates[2 * node + 1]);
+        }
+    }
+
+    /**
+     * Find the availabilities that start before or at the given start date and end after or at the given end date.
+     *
+     * @param startDate Start date of the period to cover
+     * @param endDate   End date of the period to cover
+     * @return Map of candidate ids and their availabilities covering the period
+     */
+    public Map<UUID, List<AvailabilityDTO>> findCovering(Date startDate, Date endDate) {
+        Map<UUID, List<AvailabilityDTO>> covering = new HashMap<>();
+        if (startDate == null || endDate == null || startDates.length == 0) {
+            return covering;
+        }
+        int limit = upperBound(startDate.getTime());
+        collect(1, 0, leafCount, limit, endDate.getTime(), covering);
+        return covering;
+    }
+
+    /**
+     * Get the number of indexed availabilities.
+     *
+     * @return Number of availabilities
+     */
+    public int size() {
+        return startDates.length;
+    }
+
+    /**
+     * Collect the availabilities of a segment tree node whose position is below limit and end date is at least minEndDate.
+     *
+     * @param node       Node of the segment tree
+     * @param from       First position covered by the node, inclusive
+     * @param to         Last position covered by the node, exclusive
+     * @param limit      Positions from limit are not collected
+     * @param minEndDate Minimum end date of the collected availabilities
+     * @param covering   Map to fill
+     */
+    private void collect(int node, int from, int to, int limit, long minEndDate, Map<UUID, List<AvailabilityDTO>> covering) {
+        if (from >= limit || maxEndDates[node] < minEndDate) {
+            return;
+        }
+        if (to - from == 1) {
+            covering.computeIfAbsent(candidateIds[from], key -> new ArrayList<>()).add(availabilities[from]);
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        collect(2 * node, from, middle, limit, minEndDate, covering);
+        collect(2 * node + 1, middle, to, limit, minEndDate, covering);
+    }
+
+    /**
+     * Get the number of availabilities whose start date is before or at the given date.
+     *
+     * @param date Date in epoch milliseconds
+     * @return Position of the first availability starting after the date
+     */
+    private int upperBound(long date) {
+        int low = 0;
+        int high = startDates.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (startDates[middle] <= date) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,137 @@
+package fr.polytech.Util;
+
+import java.util.*;
+
+/**
+ * Aho-Corasick automaton over the places of the availabilities.
+ * Places are added and removed incrementally in the trie, the failure links are rebuilt lazily on the next scan,
+ * and an address is scanned in a single pass to find every availability with a place contained in it.
+ * Matching is case-insensitive, like a lowercase String.contains.
+ */
+public class PlaceMatcher {
+
+    /**
+     * Node of the trie
+     */
+    private static class Node {
+        private final Map<Character, Node> children = new HashMap<>();
+        private final Set<UUID> availabilityIds = new HashSet<>();
+        private Node fail;
+        // Closest node on the failure chain that has availabilities
+        private Node output;
+    }
+
+    private final Node root = new Node();
+
+    private boolean dirty = true;
+
+    /**
+     * Add the places of an availability.
+     *
+     * @param availabilityId Availability id
+     * @param places         Places of the availability
+     */
+    public synchronized void add(UUID availabilityId, Collection<String> places) {
+        if (places == null) {
+            return;
+        }
+        for (String place : places) {
+            if (place == null) {
+                continue;
+            }
+            Node node = root;
+            for (int i = 0; i < place.length(); i++) {
+                node = node.children.computeIfAbsent(Character.toLowerCase(place.charAt(i)), key -> new Node());
+            }
+            node.availabilityIds.add(availabilityId);
+        }
+        dirty = true;
+    }
+
+    /**
+     * Remove the places of an availability.
+     *
+     * @param availabilityId Availability id
+     * @param places         Places of the availability
+     */
+    public synchronized void remove(UUID availabilityId, Collection<String> places) {
+        if (places == null) {
+            return;
+        }
+        for (String place : places) {
+            if (place == null) {
+                continue;
+            }
+            Node node = root;
+            for (int i = 0; i < place.length() && node != null; i++) {
+                node = node.children.get(Character.toLowerCase(place.charAt(i)));
+            }
+            if (node != null) {
+                node.availabilityIds.remove(availabilityId);
+            }
+        }
+        dirty = true;
+    }
+
+    /**
+     * Find the availabilities having at least one place contained in the address.
+     *
+     * @param address Address to scan
+     * @return Set of availability ids
+     */
+    public synchronized Set<UUID> match(String address) {
+        if (dirty) {
+            buildLinks();
+        }
+
+        // An empty place is contained in every address
+        Set<UUID> matches = new HashSet<>(root.availabilityIds);
+        if (address == null) {
+            return matches;
+        }
+
+        Node node = root;
+        for (int i = 0; i < address.length(); i++) {
+            Character c = Character.toLowerCase(address.charAt(i));
+            while (node != root && !node.children.containsKey(c)) {
+                node = node.fail;
+            }
+            node = node.children.getOrDefault(c, root);
+            for (Node output = node.availabilityIds.isEmpty() ? node.output : node; output != null; output = output.output) {
+                matches.addAll(output.availabilityIds);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Build the failure and output links with a breadth-first traversal of the trie.
+     */
+    private void buildLinks() {
+        Deque<Node> queue = new ArrayDeque<>();
+        root.fail = root;
+        root.output = null;
+        for (Node child : root.children.values()) {
+            child.fail = root;
+            child.output = null;
+            queue.add(child);
+        }
+
+        while (!queue.isEmpty()) {
+            Node node = queue.poll();
+            for (Map.Entry<Character, Node> entry : node.children.entrySet()) {
+                Node child = entry.getValue();
+                Node fail = node.fail;
+                while (fail != root && !fail.children.containsKey(entry.getKey())) {
+                    fail = fail.fail;
+                }
+                Node target = fail.children.get(entry.getKey());
+                child.fail = target != null && target != child ? target : root;
+                // The root output (empty place) is handled once per scan
+                child.output = child.fail != root && !child.fail.availabilityIds.isEmpty() ? child.fail : child.fail.output;
+                queue.add(child);
+            }
+        }
+        dirty = false;
+    }
+}
@@ -0,0 +1,199 @@
+package fr.polytech.Util;
+
+import fr.polytech.model.response.user.RecruiterUserResponse;
+
+import java.text.Normalizer;
+import java.util.*;
+
+/**
+ * In-memory search index of recruiters by first name and last name.
+ * Names are normalised (lowercase, without accents) and split in trigrams, so that a "name contains" query only
+ * verifies the recruiters having all the trigrams of the searched text.
+ */
+public class RecruiterSearchIndex {
+
+    private static final int GRAM_LENGTH = 3;
+
+    /**
+     * Indexed recruiter with its normalised names
+     */
+    private static class Entry {
+        private final RecruiterUserResponse recruiter;
+        private final String firstName;
+        private final String lastName;
+
+        private Entry(RecruiterUserResponse recruiter) {
+            this.recruiter = recruiter;
+            this.firstName = normalize(recruiter.getFirstName());
+            this.lastName = normalize(recruiter.getLastName());
+        }
+    }
+
+    private final Map<UUID, Entry> entries = new HashMap<>();
+    private final Map<String, Set<UUID>> firstNameGrams = new HashMap<>();
+    private final Map<String, Set<UUID>> lastNameGrams = new HashMap<>();
+
+    /**
+     * Add or update a recruiter.
+     *
+     * @param recruiter Recruiter to index
+     */
+    public synchronized void put(RecruiterUserResponse recruiter) {
+        remove(recruiter.getId());
+        Entry entry = new Entry(recruiter);
+        entries.put(recruiter.getId(), entry);
+        addGrams(firstNameGrams, entry.firstName, recruiter.getId());
+        addGrams(lastNameGrams, entry.lastName, recruiter.getId());
+    }
+
+    /**
+     * Remove a recruiter.
+     *
+     * @param id Recruiter id
+     */
+    public synchronized void remove(UUID id) {
+        Entry entry = entries.remove(id);
+        if (entry != null) {
+            removeGrams(firstNameGrams, entry.firstName, id);
+            removeGrams(lastNameGrams, entry.lastName, id);
+        }
+    }
+
+    /**
+     * Replace all the indexed recruiters.
+     *
+     * @param recruiters Recruiters to index
+     */
+    public synchronized void replaceAll(Collection<RecruiterUserResponse> recruiters) {
+        entries.clear();
+        firstNameGrams.clear();
+        lastNameGrams.clear();
+        recruiters.forEach(this::put);
+    }
+
+    /**
+     * Search the recruiters whose first name contains firstName and last name contains lastName, ignoring case
+     * and accents. A null parameter is not used as a criterion.
+     *
+     * @param firstName Text the first name must contain
+     * @param lastName  Text the last name must contain
+     * @return List of matching recruiters
+     */
+    public synchronized List<RecruiterUserResponse> search(String firstName, String lastName) {
+        String normalizedFirstName = firstName == null ? null : normalize(firstName);
+        String normalizedLastName = lastName == null ? null : normalize(lastName);
+
+        Set<UUID> candidates = intersect(
+                lookup(firstNameGrams, normalizedFirstName),
+                lookup(lastNameGrams, normalizedLastName)
+        );
+
+        List<RecruiterUserResponse> recruiters = new ArrayList<>();
+        for (UUID id : candidates == null ? entries.keySet() : candidates) {
+            Entry entry = entries.get(id);
+            if ((normalizedFirstName == null || entry.firstName.contains(normalizedFirstName)) &&
+                    (normalizedLastName == null || entry.lastName.contains(normalizedLastName))) {
+                recruiters.add(entry.recruiter);
+            }
+        }
+        return recruiters;
+    }
+
+    /**
+     * Get the number of indexed recruiters.
+     *
+     * @return Number of recruiters
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Normalise a name: lowercase and without accents.
+     *
+     * @param name Name to normalise
+     * @return Normalised name, empty if the name is null
+     */
+    public static String normalize(String name) {
+        if (name == null) {
+            return "";
+        }
+        return Normalizer.normalize(name, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Get the ids of the entries having all the grams of a text.
+     *
+     * @param grams Gram index
+     * @param text  Normalised text
+     * @return Set of ids, or null if the text is too short to use the index
+     */
+    private Set<UUID> lookup(Map<String, Set<UUID>> grams, String text) {
+        if (text == null || text.length() < GRAM_LENGTH) {
+            return null;
+        }
+        Set<UUID> result = null;
+        for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+            Set<UUID> ids = grams.getOrDefault(text.substring(i, i + GRAM_LENGTH), Collections.emptySet());
+            result = intersect(result, ids);
+            if (result.isEmpty()) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Intersect two sets of ids, null meaning all the ids.
+     *
+     * @param first  First set
+     * @param second Second set
+     * @return Intersection, or null if both sets are null
+     */
+    private Set<UUID> intersect(Set<UUID> first, Set<UUID> second) {
+        if (first == null) {
+            return second == null ? null : new HashSet<>(second);
+        }
+        if (second == null) {
+            return first;
+        }
+        Set<UUID> result = new HashSet<>(first);
+        result.retainAll(second);
+        return result;
+    }
+
+    /**
+     * Add the grams of a text to an index.
+     *
+     * @param grams Gram index
+     * @param text  Normalised text
+     * @param id    Id of the entry
+     */
+    private void addGrams(Map<String, Set<UUID>> grams, String text, UUID id) {
+        for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+            grams.computeIfAbsent(text.substring(i, i + GRAM_LENGTH), key -> new HashSet<>()).add(id);
+        }
+    }
+
+    /**
+     * Remove the grams of a text from an index.
+     *
+     * @param grams Gram index
+     * @param text  Normalised text
+     * @param id    Id of the entry
+     */
+    private void removeGrams(Map<String, Set<UUID>> grams, String text, UUID id) {
+        for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+            String gram = text.substring(i, i + GRAM_LENGTH);
+            Set<UUID> ids = grams.get(gram);
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    grams.remove(gram);
+                }
+            }
+        }
+    }
+}
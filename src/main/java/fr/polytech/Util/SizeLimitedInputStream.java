@@ -0,0 +1,102 @@
+package fr.polytech.Util;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream failing as soon as more than a maximum number of bytes is read from the wrapped stream.
+ * It bounds uploads whose size is not known in advance (chunked request bodies).
+ */
+public class SizeLimitedInputStream extends FilterInputStream {
+
+    private final long maxSize;
+    private long count = 0;
+
+    /**
+     * Wrap a stream.
+     *
+     * @param in      Stream to wrap
+     * @param maxSize Maximum number of bytes that can be read
+     */
+    public SizeLimitedInputStream(InputStream in, long maxSize) {
+        super(in);
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Read a byte.
+     *
+     * @return The byte, or -1 at the end of the stream
+     * @throws IOException              if an I/O error occurs
+     * @throws HttpClientErrorException if the maximum size is exceeded
+     */
+    @Override
+    public int read() throws IOException, HttpClientErrorException {
+        int b = super.read();
+        if (b != -1) {
+            count(1);
+        }
+        return b;
+    }
+
+    /**
+     * Read bytes into an array.
+     *
+     * @param b   Destination array
+     * @param off Offset in the array
+     * @param len Maximum number of bytes to read
+     * @return Number of bytes read, or -1 at the end of the stream
+     * @throws IOException              if an I/O error occurs
+     * @throws HttpClientErrorException if the maximum size is exceeded
+     */
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException, HttpClientErrorException {
+        int read = super.read(b, off, len);
+        if (read > 0) {
+            count(read);
+        }
+        return read;
+    }
+
+    /**
+     * Skip bytes.
+     *
+     * @param n Number of bytes to skip
+     * @return Number of bytes skipped
+     * @throws IOException              if an I/O error occurs
+     * @throws HttpClientErrorException if the maximum size is exceeded
+     */
+    @Override
+    public long skip(long n) throws IOException, HttpClientErrorException {
+        long skipped = super.skip(n);
+        count(skipped);
+        return skipped;
+    }
+
+    /**
+     * Mark is not supported, the count could not be reset.
+     *
+     * @return False
+     */
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * Count read bytes.
+     *
+     * @param read Number of bytes read
+     * @throws HttpClientErrorException if the maximum size is exceeded
+     */
+    private void count(long read) throws HttpClientErrorException {
+        count += read;
+        if (count > maxSize) {
+            throw new HttpClientErrorException(HttpStatus.PAYLOAD_TOO_LARGE, "File larger than " + maxSize + " bytes");
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package fr.polytech.Util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiPredicate;
+
+/**
+ * Thread-safe cache with a maximum size and a time to live.
+ * When the cache is full, the least recently used entry is evicted.
+ *
+ * @param <K> Type of the keys
+ * @param <V> Type of the values
+ */
+public class TtlCache<K, V> {
+
+    /**
+     * Cached value with its expiration time
+     */
+    private static class Entry<V> {
+        private final V value;
+        private final long expiresAt;
+
+        private Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final long ttlMs;
+    private final Map<K, Entry<V>> entries;
+
+    /**
+     * Create a cache.
+     *
+     * @param maxSize Maximum number of entries
+     * @param ttlMs   Time to live of the entries, in milliseconds
+     */
+    public TtlCache(int maxSize, long ttlMs) {
+        this.ttlMs = ttlMs;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, TtlCache.Entry<V>> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Get a value from the cache.
+     *
+     * @param key Key of the value
+     * @return Value, or null if it is missing or expired
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt < System.currentTimeMillis()) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * Put a value in the cache.
+     *
+     * @param key   Key of the value
+     * @param value Value to cache
+     */
+    public synchronized void put(K key, V value) {
+        entries.put(key, new Entry<>(value, System.currentTimeMillis() + ttlMs));
+    }
+
+    /**
+     * Remove a value from the cache.
+     *
+     * @param key Key of the value
+     */
+    public synchronized void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    /**
+     * Remove the values matching a predicate from the cache.
+     *
+     * @param predicate Predicate on the key and the value
+     */
+    public synchronized void invalidateIf(BiPredicate<K, V> predicate) {
+        Iterator<Map.Entry<K, Entry<V>>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<K, Entry<V>> entry = iterator.next();
+            if (predicate.test(entry.getKey(), entry.getValue().value)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Remove all the values from the cache.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Get the number of values in the cache, including expired ones not yet removed.
+     *
+     * @return Number of values
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+}
@@ -9,15 +9,28 @@ import org.keycloak.representations.idm.UserRepresentation;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.client.HttpClientErrorException;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
+import static fr.polytech.constant.Images.*;
 import static fr.polytech.constant.Roles.*;
 
 public class Utils {
 
+    /**
+     * Profile picture URL having variants: uploaded after variants existed, with or without a content hash
+     */
+    private static final Pattern PROFILE_PICTURE_URL_PATTERN = Pattern.compile("/" + PROFILE_PICTURE + "(-[0-9a-f]{64})?$");
+
     private static final List<String> commonAttributes = List.of("birthdate", "citizenship", "phone", "addressId", "profilePictureUrl", "gender", "isRegistered", "toBeRemoved");
 
     /**
@@ -265,6 +278,107 @@ public class Utils {
         }
     }
 
+    /**
+     * Get an int from an environment variable
+     *
+     * @param name         Name of the environment variable
+     * @param defaultValue Value returned if the variable is missing or invalid
+     * @return int value of the environment variable or the default value
+     */
+    public static int intFromEnv(String name, int defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Get the object name of a resized variant of an image
+     *
+     * @param objectName Object name of the original image
+     * @param size       Size of the variant, in pixels
+     * @return Object name of the variant
+     */
+    public static String imageVariantName(String objectName, int size) {
+        return objectName + "-" + size + VARIANT_EXTENSION;
+    }
+
+    /**
+     * Get the URL of the thumbnail of a profile picture, to be used by the list endpoints
+     *
+     * @param profilePictureUrl URL of the profile picture
+     * @return URL of the thumbnail, or the URL of the profile picture if it was uploaded before variants existed
+     */
+    public static String profilePictureThumbnailUrl(String profilePictureUrl) {
+        if (profilePictureUrl == null || !PROFILE_PICTURE_URL_PATTERN.matcher(profilePictureUrl).find()) {
+            return profilePictureUrl;
+        }
+        return imageVariantName(profilePictureUrl, THUMBNAIL_SIZE);
+    }
+
+    /**
+     * Get the name of a content-addressed object
+     *
+     * @param prefix Prefix of the name, e.g. the kind of file
+     * @param hash   Hash of the content
+     * @return Object name
+     */
+    public static String contentAddressedName(String prefix, String hash) {
+        return prefix + "-" + hash;
+    }
+
+    /**
+     * Get the object name at the end of a file URL
+     *
+     * @param url URL of the file
+     * @return Object name, or null if the URL is null
+     */
+    public static String objectNameFromUrl(String url) {
+        return url == null ? null : url.substring(url.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * Compute the SHA-256 hash of a stream, reading it to the end
+     *
+     * @param stream Stream to hash
+     * @return Hexadecimal hash
+     * @throws IOException              if an I/O error occurs
+     * @throws NoSuchAlgorithmException if SHA-256 is not available
+     */
+    public static String sha256(InputStream stream) throws IOException, NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = stream.read(buffer)) != -1) {
+            digest.update(buffer, 0, read);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Wait for the result of a future, rethrowing the exception it failed with
+     *
+     * @param future Future to wait for
+     * @param <T>    Type of the result
+     * @return Result of the future
+     * @throws RuntimeException the exception the future failed with, e.g. an HttpClientErrorException
+     */
+    public static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
     /**
      * Get a String from an Object
      *
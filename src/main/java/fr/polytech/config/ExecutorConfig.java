@@ -0,0 +1,30 @@
+package fr.polytech.config;
+
+import fr.polytech.Util.Utils;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static fr.polytech.constant.Env.API_CALL_PARALLELISM;
+import static fr.polytech.constant.Env.VIRTUAL_THREADS_ENABLED;
+
+@Configuration
+public class ExecutorConfig {
+
+    /**
+     * Executor used to call the other APIs concurrently.
+     * In virtual-thread mode every call gets its own virtual thread, the concurrency being bounded by the HTTP
+     * connection pool instead of the number of threads.
+     *
+     * @return ExecutorService with a bounded number of threads, or creating a virtual thread per call
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService apiCallExecutor() {
+        if (Boolean.parseBoolean(System.getenv(VIRTUAL_THREADS_ENABLED))) {
+            return Executors.newVirtualThreadPerTaskExecutor();
+        }
+        return Executors.newFixedThreadPool(Utils.intFromEnv(API_CALL_PARALLELISM, 32));
+    }
+}
@@ -0,0 +1,51 @@
+package fr.polytech.config;
+
+import fr.polytech.Util.Utils;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.util.backoff.FixedBackOff;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static fr.polytech.constant.Env.*;
+
+@Configuration
+public class KafkaConfig {
+
+    /**
+     * Listener container factory delivering the records by batch, with offsets committed manually once a whole
+     * batch is processed.
+     * When a listener throws a BatchListenerFailedException, the offsets of the records before the failed one are
+     * committed and the batch is delivered again from the failed record, until the retries are exhausted and the
+     * failed record is logged and skipped.
+     *
+     * @param consumerFactory Consumer factory configured by Spring Boot
+     * @return ConcurrentKafkaListenerContainerFactory for batch listeners
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, String> batchKafkaListenerContainerFactory(ConsumerFactory<?, ?> consumerFactory) {
+        Map<String, Object> properties = new HashMap<>(consumerFactory.getConfigurationProperties());
+        properties.putIfAbsent(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        properties.putIfAbsent(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        properties.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        properties.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, Utils.intFromEnv(KAFKA_BATCH_MAX_RECORDS, 500));
+
+        ConcurrentKafkaListenerContainerFactory<String, String> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(new DefaultKafkaConsumerFactory<>(properties));
+        factory.setBatchListener(true);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.setCommonErrorHandler(new DefaultErrorHandler(new FixedBackOff(
+                Utils.intFromEnv(KAFKA_BATCH_RETRY_INTERVAL_MS, 1000),
+                Utils.intFromEnv(KAFKA_BATCH_MAX_RETRIES, 9)
+        )));
+        return factory;
+    }
+}
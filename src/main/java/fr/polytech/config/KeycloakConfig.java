@@ -0,0 +1,27 @@
+package fr.polytech.config;
+
+import org.keycloak.admin.client.Keycloak;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import static fr.polytech.constant.Env.*;
+
+@Configuration
+public class KeycloakConfig {
+
+    /**
+     * Keycloak admin client shared by the services, with a single admin token state
+     *
+     * @return Keycloak instance
+     */
+    @Bean(destroyMethod = "close")
+    public Keycloak keycloak() {
+        return Keycloak.getInstance(
+                System.getenv(KEYCLOAK_URI),
+                System.getenv(KEYCLOAK_REALM),
+                System.getenv(ADMIN_USERNAME),
+                System.getenv(ADMIN_PASSWORD),
+                System.getenv(CLIENT_ID)
+        );
+    }
+}
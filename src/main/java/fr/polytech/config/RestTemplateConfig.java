@@ -1,16 +1,129 @@
 package fr.polytech.config;
 
+import fr.polytech.Util.Utils;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.DefaultConnectionKeepAliveStrategy;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.cloud.client.loadbalancer.LoadBalanced;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.URI;
+
+import static fr.polytech.constant.Env.*;
+
+/**
+ * Outbound HTTP layer: every RestTemplate shares one pooled HTTP client, with connect/read timeouts, keep-alive
+ * and idle connection eviction. The connection pool metrics are exposed under httpcomponents.httpclient.pool.
+ */
 @Configuration
 public class RestTemplateConfig {
 
+    private static final Logger logger = LoggerFactory.getLogger(RestTemplateConfig.class);
+
+    /**
+     * Pooled connection manager, with a global limit and a limit per downstream host.
+     * HTTP_POOL_ROUTE_LIMITS overrides the limit of specific hosts, e.g. "offer-api:8080=100,https://keycloak:8443=20".
+     *
+     * @return PoolingHttpClientConnectionManager
+     */
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager httpConnectionManager() {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(Utils.intFromEnv(HTTP_POOL_MAX_TOTAL, 200))
+                .setMaxConnPerRoute(Utils.intFromEnv(HTTP_POOL_MAX_PER_ROUTE, 50))
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(Utils.intFromEnv(HTTP_CONNECT_TIMEOUT_MS, 2000)))
+                        .setSocketTimeout(Timeout.ofMilliseconds(Utils.intFromEnv(HTTP_READ_TIMEOUT_MS, 10000)))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+
+        String routeLimits = System.getenv(HTTP_POOL_ROUTE_LIMITS);
+        if (routeLimits != null && !routeLimits.isBlank()) {
+            for (String routeLimit : routeLimits.split(",")) {
+                String[] parts = routeLimit.trim().split("=");
+                try {
+                    URI uri = URI.create(parts[0].contains("://") ? parts[0] : "http://" + parts[0]);
+                    int port = uri.getPort() != -1 ? uri.getPort() : "https".equals(uri.getScheme()) ? 443 : 80;
+                    connectionManager.setMaxPerRoute(new HttpRoute(new HttpHost(uri.getScheme(), uri.getHost(), port)), Integer.parseInt(parts[1]));
+                } catch (RuntimeException e) {
+                    logger.warn("Ignoring invalid connection pool limit: " + routeLimit);
+                }
+            }
+        }
+        return connectionManager;
+    }
+
+    /**
+     * Pooled HTTP client shared by the RestTemplates
+     *
+     * @param connectionManager Connection manager
+     * @return CloseableHttpClient
+     */
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient httpClient(PoolingHttpClientConnectionManager connectionManager) {
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(Utils.intFromEnv(HTTP_POOL_ACQUIRE_TIMEOUT_MS, 2000)))
+                        .setResponseTimeout(Timeout.ofMilliseconds(Utils.intFromEnv(HTTP_READ_TIMEOUT_MS, 10000)))
+                        .build())
+                .setKeepAliveStrategy(DefaultConnectionKeepAliveStrategy.INSTANCE)
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(Utils.intFromEnv(HTTP_KEEP_ALIVE_MS, 30000)))
+                .build();
+    }
+
+    /**
+     * Connection pool metrics: leased, pending and available connections, and limits
+     *
+     * @param connectionManager Connection manager
+     * @return MeterBinder registered by the actuator
+     */
+    @Bean
+    public MeterBinder httpConnectionPoolMetrics(PoolingHttpClientConnectionManager connectionManager) {
+        return new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "outbound");
+    }
+
+    /**
+     * RestTemplate resolving the other microservices through service discovery
+     *
+     * @param httpClient Pooled HTTP client
+     * @return RestTemplate
+     */
     @Bean
+    @Primary
     @LoadBalanced
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestTemplate restTemplate(CloseableHttpClient httpClient) {
+        return new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+    }
+
+    /**
+     * RestTemplate calling absolute URLs without service discovery, e.g. Keycloak
+     *
+     * @param httpClient Pooled HTTP client
+     * @return RestTemplate
+     */
+    @Bean
+    @Qualifier("directRestTemplate")
+    public RestTemplate directRestTemplate(CloseableHttpClient httpClient) {
+        return new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
     }
 }
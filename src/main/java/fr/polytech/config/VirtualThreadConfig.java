@@ -0,0 +1,35 @@
+package fr.polytech.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.Executors;
+
+import static fr.polytech.constant.Env.VIRTUAL_THREADS_ENABLED;
+
+/**
+ * Virtual-thread execution mode, enabled with VIRTUAL_THREADS_ENABLED=true.
+ * Every HTTP request runs on its own virtual thread instead of a Tomcat worker thread, so requests blocked on
+ * Keycloak or on the other APIs no longer hold a platform thread.
+ */
+@Configuration
+@ConditionalOnProperty(name = VIRTUAL_THREADS_ENABLED, havingValue = "true")
+public class VirtualThreadConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadConfig.class);
+
+    /**
+     * Run the Tomcat requests on virtual threads
+     *
+     * @return TomcatProtocolHandlerCustomizer replacing the worker thread pool
+     */
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        logger.info("Running requests on virtual threads");
+        return protocolHandler -> protocolHandler.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    }
+}
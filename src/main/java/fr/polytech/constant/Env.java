@@ -14,4 +14,46 @@ public class Env {
     public static final String PLAN_API_URI = "PLAN_API_URI";
     public static final String COMPANY_API_URI = "COMPANY_API_URI";
     public static final String ADDRESS_API_URI = "ADDRESS_API_URI";
+    public static final String MATCHING_PARALLELISM = "MATCHING_PARALLELISM";
+    public static final String MATCHING_TIMEOUT_MS = "MATCHING_TIMEOUT_MS";
+    public static final String AVAILABILITY_INDEX_LOAD_TIMEOUT_MS = "AVAILABILITY_INDEX_LOAD_TIMEOUT_MS";
+    public static final String MATCH_CACHE_SIZE = "MATCH_CACHE_SIZE";
+    public static final String MATCH_CACHE_TTL_MS = "MATCH_CACHE_TTL_MS";
+    public static final String USER_CACHE_SIZE = "USER_CACHE_SIZE";
+    public static final String USER_CACHE_TTL_MS = "USER_CACHE_TTL_MS";
+    public static final String API_CALL_PARALLELISM = "API_CALL_PARALLELISM";
+    public static final String COMPANY_CACHE_SIZE = "COMPANY_CACHE_SIZE";
+    public static final String COMPANY_CACHE_TTL_MS = "COMPANY_CACHE_TTL_MS";
+    public static final String DETAILED_USER_TIMEOUT_MS = "DETAILED_USER_TIMEOUT_MS";
+    public static final String BATCH_LOOKUP_ENABLED = "BATCH_LOOKUP_ENABLED";
+    public static final String BATCH_WINDOW_MS = "BATCH_WINDOW_MS";
+    public static final String BATCH_MAX_SIZE = "BATCH_MAX_SIZE";
+    public static final String STUB_LATENCY_MS = "STUB_LATENCY_MS";
+    public static final String DETAILED_USER_CACHE_SIZE = "DETAILED_USER_CACHE_SIZE";
+    public static final String DETAILED_USER_CACHE_TTL_MS = "DETAILED_USER_CACHE_TTL_MS";
+    public static final String HTTP_POOL_MAX_TOTAL = "HTTP_POOL_MAX_TOTAL";
+    public static final String HTTP_POOL_MAX_PER_ROUTE = "HTTP_POOL_MAX_PER_ROUTE";
+    public static final String HTTP_POOL_ROUTE_LIMITS = "HTTP_POOL_ROUTE_LIMITS";
+    public static final String HTTP_POOL_ACQUIRE_TIMEOUT_MS = "HTTP_POOL_ACQUIRE_TIMEOUT_MS";
+    public static final String HTTP_CONNECT_TIMEOUT_MS = "HTTP_CONNECT_TIMEOUT_MS";
+    public static final String HTTP_READ_TIMEOUT_MS = "HTTP_READ_TIMEOUT_MS";
+    public static final String HTTP_KEEP_ALIVE_MS = "HTTP_KEEP_ALIVE_MS";
+    public static final String VIRTUAL_THREADS_ENABLED = "VIRTUAL_THREADS_ENABLED";
+    public static final String KAFKA_BATCH_MAX_RECORDS = "KAFKA_BATCH_MAX_RECORDS";
+    public static final String KAFKA_BATCH_RETRY_INTERVAL_MS = "KAFKA_BATCH_RETRY_INTERVAL_MS";
+    public static final String KAFKA_BATCH_MAX_RETRIES = "KAFKA_BATCH_MAX_RETRIES";
+    public static final String KAFKA_PROCESSED_RECORD_CACHE_SIZE = "KAFKA_PROCESSED_RECORD_CACHE_SIZE";
+    public static final String KAFKA_PROCESSED_RECORD_CACHE_TTL_MS = "KAFKA_PROCESSED_RECORD_CACHE_TTL_MS";
+    public static final String ADMIN_TOKEN_REFRESH_MARGIN_MS = "ADMIN_TOKEN_REFRESH_MARGIN_MS";
+    public static final String MINIO_UPLOAD_PART_SIZE = "MINIO_UPLOAD_PART_SIZE";
+    public static final String MINIO_UPLOAD_MAX_SIZE = "MINIO_UPLOAD_MAX_SIZE";
+    public static final String MINIO_SHARED_BUCKET = "MINIO_SHARED_BUCKET";
+    public static final String MINIO_MISSING_BUCKET_CACHE_SIZE = "MINIO_MISSING_BUCKET_CACHE_SIZE";
+    public static final String MINIO_MISSING_BUCKET_TTL_MS = "MINIO_MISSING_BUCKET_TTL_MS";
+    public static final String IMAGE_MAX_PIXELS = "IMAGE_MAX_PIXELS";
+    public static final String IMAGE_DECODE_PARALLELISM = "IMAGE_DECODE_PARALLELISM";
+    public static final String IMAGE_DECODE_WAIT_MS = "IMAGE_DECODE_WAIT_MS";
+    public static final String MINIO_PRESIGNED_URL_EXPIRY_S = "MINIO_PRESIGNED_URL_EXPIRY_S";
+    public static final String MINIO_STAGING_BUCKET = "MINIO_STAGING_BUCKET";
+    public static final String MINIO_STAGING_EXPIRY_DAYS = "MINIO_STAGING_EXPIRY_DAYS";
 }
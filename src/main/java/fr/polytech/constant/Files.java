@@ -0,0 +1,6 @@
+package fr.polytech.constant;
+
+public class Files {
+    public static final String CV = "cv";
+    public static final String CV_UPLOAD = "cv-upload";
+}
@@ -0,0 +1,11 @@
+package fr.polytech.constant;
+
+public class Images {
+    public static final String PROFILE_PICTURE = "profile-picture";
+    public static final String PROFILE_PICTURE_UPLOAD = "profile-picture-upload";
+    public static final int THUMBNAIL_SIZE = 128;
+    public static final int DISPLAY_SIZE = 512;
+    public static final int[] PROFILE_PICTURE_SIZES = {THUMBNAIL_SIZE, DISPLAY_SIZE};
+    public static final String VARIANT_EXTENSION = ".jpg";
+    public static final String VARIANT_CONTENT_TYPE = "image/jpeg";
+}
@@ -5,4 +5,6 @@ public class Plans {
     public static final String SILVER = "silver";
     public static final String GOLD = "gold";
     public static final String PLATINUM = "platinum";
+    public static final int FREE_MATCH_LIMIT = 5;
+    public static final int SILVER_MATCH_LIMIT = 10;
 }
@@ -0,0 +1,45 @@
+package fr.polytech.model.aux;
+
+import fr.polytech.model.AvailabilityDTO;
+
+import java.util.UUID;
+
+public class AvailabilityEventDTO {
+    // created, updated or deleted
+    private String action;
+    private UUID userId;
+    private AvailabilityDTO availability;
+
+    public String getAction() {
+        return action;
+    }
+
+    public void setAction(String action) {
+        this.action = action;
+    }
+
+    public UUID getUserId() {
+        return userId;
+    }
+
+    public void setUserId(UUID userId) {
+        this.userId = userId;
+    }
+
+    public AvailabilityDTO getAvailability() {
+        return availability;
+    }
+
+    public void setAvailability(AvailabilityDTO availability) {
+        this.availability = availability;
+    }
+
+    @Override
+    public String toString() {
+        return "AvailabilityEventDTO{" +
+                "action='" + action + '\'' +
+                ", userId=" + userId +
+                ", availability=" + availability +
+                '}';
+    }
+}
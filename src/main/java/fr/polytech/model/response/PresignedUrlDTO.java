@@ -0,0 +1,51 @@
+package fr.polytech.model.response;
+
+import java.util.Date;
+import java.util.UUID;
+
+public class PresignedUrlDTO {
+    private String url;
+    private String method;
+    private Date expiresAt;
+    private UUID uploadId;
+
+    public PresignedUrlDTO() { }
+
+    public PresignedUrlDTO(String url, String method, Date expiresAt) {
+        this.url = url;
+        this.method = method;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public void setMethod(String method) {
+        this.method = method;
+    }
+
+    public Date getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Date expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public UUID getUploadId() {
+        return uploadId;
+    }
+
+    public void setUploadId(UUID uploadId) {
+        this.uploadId = uploadId;
+    }
+}
@@ -1,5 +1,6 @@
 package fr.polytech.model.response.user.detailed;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import fr.polytech.model.AvailabilityDTO;
 import fr.polytech.model.ExperienceDTO;
 import fr.polytech.model.ReferenceDTO;
@@ -8,6 +9,7 @@ import fr.polytech.model.aux.*;
 
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 public class CandidateUserResponseDetailed extends DetailedRecruiterCandidate {
@@ -17,6 +19,9 @@ public class CandidateUserResponseDetailed extends DetailedRecruiterCandidate {
     private List<DetailedExperienceDTO> experienceList;
     private List<DetailedAvailabilityDTO> availabilityList;
     private List<DetailedReviewDTO> reviewList;
+    // Sections that could not be fully retrieved, only set for partial responses
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Map<String, String> errors;
 
     public CandidateUserResponseDetailed(UUID id, String email, String firstName, String lastName, String username, String role, Boolean isRegistered, Integer gender, Date birthdate, String citizenship, String phone, AddressDTO address, String profilePictureUrl, Boolean toBeRemoved, String cvUrl, String shortBio, List<DetailedReferenceDTO> referenceList, List<DetailedExperienceDTO> experienceList, List<DetailedAvailabilityDTO> availabilityList, List<DetailedReviewDTO> reviewList) {
         super(id, email, firstName, lastName, username, role, isRegistered, gender, birthdate, citizenship, phone, address, profilePictureUrl, toBeRemoved);
@@ -75,4 +80,12 @@ public class CandidateUserResponseDetailed extends DetailedRecruiterCandidate {
     public void setReviewList(List<DetailedReviewDTO> reviewList) {
         this.reviewList = reviewList;
     }
+
+    public Map<String, String> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(Map<String, String> errors) {
+        this.errors = errors;
+    }
 }
@@ -0,0 +1,122 @@
+package fr.polytech.restcontroller;
+
+import fr.polytech.annotation.IsCandidateAndSender;
+import fr.polytech.annotation.IsRecruiterOrAdminOrSender;
+import fr.polytech.model.response.PresignedUrlDTO;
+import fr.polytech.model.response.user.BaseUserResponse;
+import fr.polytech.service.UserFileService;
+import io.minio.errors.MinioException;
+import jakarta.ws.rs.Produces;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.io.IOException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.UUID;
+
+/**
+ * CVs are private files, uploaded and downloaded directly from MinIO with pre-signed URLs.
+ */
+@RestController
+@RequestMapping("/api/v1/user/cv")
+public class CvController {
+    private final Logger logger = LoggerFactory.getLogger(CvController.class);
+
+    private final UserFileService userFileService;
+
+    /**
+     * Constructor.
+     *
+     * @param userFileService UserFileService
+     */
+    public CvController(UserFileService userFileService) {
+        this.userFileService = userFileService;
+    }
+
+    /**
+     * Get a pre-signed URL to upload the CV of a candidate directly to MinIO.
+     * The upload must then be confirmed with the complete endpoint.
+     *
+     * @param id    User id
+     * @param token Access token of the user
+     * @return ResponseEntity containing the pre-signed PUT URL
+     */
+    @PostMapping("/upload-url/{id}")
+    @IsCandidateAndSender
+    @Produces(MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<PresignedUrlDTO> getUploadUrl(
+            @PathVariable("id") String id,
+            @RequestHeader("Authorization") String token
+    ) {
+        try {
+            PresignedUrlDTO presignedUrl = userFileService.getCvUploadUrl(id);
+            logger.info("Created CV upload URL");
+            return new ResponseEntity<>(presignedUrl, HttpStatus.OK);
+        } catch (IOException | NoSuchAlgorithmException | InvalidKeyException e) {
+            return new ResponseEntity<>(null, HttpStatus.BAD_REQUEST);
+        } catch (MinioException e) {
+            return new ResponseEntity<>(null, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Complete the upload of a CV sent with a pre-signed URL, setting the CV URL of the candidate.
+     *
+     * @param id       User id
+     * @param token    Access token of the user
+     * @param uploadId Id of the upload, given with the pre-signed URL
+     * @return ResponseEntity containing the response from the API
+     */
+    @PatchMapping("/complete/{id}")
+    @IsCandidateAndSender
+    @Produces(MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BaseUserResponse> completeUpload(
+            @PathVariable("id") String id,
+            @RequestHeader("Authorization") String token,
+            @RequestParam("uploadId") UUID uploadId
+    ) {
+        try {
+            BaseUserResponse updatedUser = userFileService.completeCvUpload(id, uploadId);
+            return new ResponseEntity<>(updatedUser, HttpStatus.OK);
+        } catch (HttpClientErrorException e) {
+            return new ResponseEntity<>(null, e.getStatusCode());
+        } catch (IOException | NoSuchAlgorithmException | InvalidKeyException e) {
+            return new ResponseEntity<>(null, HttpStatus.BAD_REQUEST);
+        } catch (MinioException e) {
+            return new ResponseEntity<>(null, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Get a pre-signed URL to download the CV of a candidate directly from MinIO.
+     *
+     * @param id    User id
+     * @param token Access token of the user
+     * @return ResponseEntity containing the pre-signed GET URL
+     */
+    @GetMapping("/download-url/{id}")
+    @IsRecruiterOrAdminOrSender
+    @Produces(MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<PresignedUrlDTO> getDownloadUrl(
+            @PathVariable("id") String id,
+            @RequestHeader("Authorization") String token
+    ) {
+        try {
+            PresignedUrlDTO presignedUrl = userFileService.getCvDownloadUrl(id);
+            logger.info("Created CV download URL");
+            return new ResponseEntity<>(presignedUrl, HttpStatus.OK);
+        } catch (HttpClientErrorException e) {
+            return new ResponseEntity<>(null, e.getStatusCode());
+        } catch (IOException | NoSuchAlgorithmException | InvalidKeyException e) {
+            return new ResponseEntity<>(null, HttpStatus.BAD_REQUEST);
+        } catch (MinioException e) {
+            return new ResponseEntity<>(null, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+}
@@ -1,19 +1,20 @@
 package fr.polytech.restcontroller;
 
-import fr.polytech.model.request.UpdateDTO;
+import fr.polytech.annotation.IsCandidateOrRecruiterAndSender;
+import fr.polytech.model.response.PresignedUrlDTO;
 import fr.polytech.model.response.user.BaseUserResponse;
-import fr.polytech.service.MinioService;
-import fr.polytech.service.UserService;
+import fr.polytech.service.UserFileService;
 import io.minio.errors.MinioException;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.Produces;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.multipart.MultipartFile;
@@ -21,6 +22,7 @@ import org.springframework.web.multipart.MultipartFile;
 import java.io.IOException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
+import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/v1/user/profile-picture")
@@ -28,47 +30,121 @@ public class FileController {
     private final Logger logger = LoggerFactory.getLogger(UserController.class);
 
     @Autowired
-    private final UserService userService;
-
-    @Autowired
-    private final MinioService minioService;
+    private final UserFileService userFileService;
 
     /**
      * Constructor.
      *
-     * @param userService  UserService
-     * @param minioService MinioService
+     * @param userFileService UserFileService
      */
-    public FileController(UserService userService, MinioService minioService) {
-        this.userService = userService;
-        this.minioService = minioService;
+    public FileController(UserFileService userFileService) {
+        this.userFileService = userFileService;
     }
 
     /**
-     * Add a profile picture to a user.
+     * Add a profile picture to a user from a multipart form.
      *
-     * @param id   User id
-     * @param file Profile picture file
+     * @param id    User id
+     * @param token Access token of the user
+     * @param file  Profile picture file
      * @return ResponseEntity containing the response from the API
      */
-    @PatchMapping("/profile-picture/add/{id}")
-    @PreAuthorize("hasAnyRole('client_candidate', 'client_recruiter')")
+    @PatchMapping(value = "/profile-picture/add/{id}", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @IsCandidateOrRecruiterAndSender
     @Consumes(MediaType.MULTIPART_FORM_DATA_VALUE)
     @Produces(MediaType.TEXT_PLAIN_VALUE)
     public ResponseEntity<BaseUserResponse> addProfilePicture(
             @PathVariable("id") String id,
+            @RequestHeader("Authorization") String token,
             @RequestParam("file") MultipartFile file
     ) {
         try {
-            // Upload the file to MinIO
-            minioService.uploadFile(id, id, file, true);
+            BaseUserResponse updatedUser = userFileService.addProfilePicture(id, file);
+            return new ResponseEntity<>(updatedUser, HttpStatus.OK);
+        } catch (HttpClientErrorException e) {
+            return new ResponseEntity<>(null, e.getStatusCode());
+        } catch (IOException | NoSuchAlgorithmException | InvalidKeyException e) {
+            return new ResponseEntity<>(null, HttpStatus.BAD_REQUEST);
+        } catch (MinioException e) {
+            return new ResponseEntity<>(null, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Add a profile picture to a user from the raw request body.
+     * The body is streamed to MinIO as it is received, it is never held whole in memory or on disk.
+     *
+     * @param id          User id
+     * @param token       Access token of the user
+     * @param contentType Content type of the picture
+     * @param request     HttpServletRequest whose body is the picture
+     * @return ResponseEntity containing the response from the API
+     */
+    @PatchMapping(value = "/profile-picture/add/{id}", consumes = {"image/*", MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    @IsCandidateOrRecruiterAndSender
+    @Produces(MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<BaseUserResponse> addProfilePictureStream(
+            @PathVariable("id") String id,
+            @RequestHeader("Authorization") String token,
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            HttpServletRequest request
+    ) {
+        try {
+            BaseUserResponse updatedUser = userFileService.addProfilePicture(id, request.getInputStream(), request.getContentLengthLong(), contentType);
+            return new ResponseEntity<>(updatedUser, HttpStatus.OK);
+        } catch (HttpClientErrorException e) {
+            return new ResponseEntity<>(null, e.getStatusCode());
+        } catch (IOException | NoSuchAlgorithmException | InvalidKeyException e) {
+            return new ResponseEntity<>(null, HttpStatus.BAD_REQUEST);
+        } catch (MinioException e) {
+            return new ResponseEntity<>(null, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
 
-            // Update the user's profile picture URL
-            UpdateDTO updateDTO = new UpdateDTO();
-            updateDTO.setProfilePictureUrl(System.getenv("MINIO_PUBLIC_URI") + "/" + id + "/" + id);
-            BaseUserResponse updatedUser = userService.updateUser(id, updateDTO);
+    /**
+     * Get a pre-signed URL to upload a profile picture directly to MinIO.
+     * The upload must then be confirmed with the complete endpoint.
+     *
+     * @param id    User id
+     * @param token Access token of the user
+     * @return ResponseEntity containing the pre-signed PUT URL
+     */
+    @PostMapping("/profile-picture/upload-url/{id}")
+    @IsCandidateOrRecruiterAndSender
+    @Produces(MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<PresignedUrlDTO> getProfilePictureUploadUrl(
+            @PathVariable("id") String id,
+            @RequestHeader("Authorization") String token
+    ) {
+        try {
+            PresignedUrlDTO presignedUrl = userFileService.getProfilePictureUploadUrl(id);
+            logger.info("Created profile picture upload URL");
+            return new ResponseEntity<>(presignedUrl, HttpStatus.OK);
+        } catch (IOException | NoSuchAlgorithmException | InvalidKeyException e) {
+            return new ResponseEntity<>(null, HttpStatus.BAD_REQUEST);
+        } catch (MinioException e) {
+            return new ResponseEntity<>(null, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
 
-            logger.info("Added profile picture to user");
+    /**
+     * Complete the upload of a profile picture sent with a pre-signed URL.
+     *
+     * @param id       User id
+     * @param token    Access token of the user
+     * @param uploadId Id of the upload, given with the pre-signed URL
+     * @return ResponseEntity containing the response from the API
+     */
+    @PatchMapping("/profile-picture/complete/{id}")
+    @IsCandidateOrRecruiterAndSender
+    @Produces(MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BaseUserResponse> completeProfilePictureUpload(
+            @PathVariable("id") String id,
+            @RequestHeader("Authorization") String token,
+            @RequestParam("uploadId") UUID uploadId
+    ) {
+        try {
+            BaseUserResponse updatedUser = userFileService.completeProfilePictureUpload(id, uploadId);
             return new ResponseEntity<>(updatedUser, HttpStatus.OK);
         } catch (HttpClientErrorException e) {
             return new ResponseEntity<>(null, e.getStatusCode());
@@ -82,24 +158,20 @@ public class FileController {
     /**
      * Remove a profile picture from a user.
      *
-     * @param id User id
+     * @param id    User id
+     * @param token Access token of the user
      * @return ResponseEntity containing the response from the API
      */
     @PatchMapping("/profile-picture/remove/{id}")
-    @PreAuthorize("hasAnyRole('client_candidate', 'client_recruiter') || @userService.checkUser(#id, #token)")
+    @IsCandidateOrRecruiterAndSender
     @Produces(MediaType.TEXT_PLAIN_VALUE)
     public ResponseEntity<BaseUserResponse> removeProfilePicture(
             @PathVariable("id") String id,
             @RequestHeader("Authorization") String token
     ) {
         try {
-            // Delete the file from MinIO
-            minioService.deleteFileFromBucket(id, id);
-
-            // Update the user's profile picture URL
-            UpdateDTO updateDTO = new UpdateDTO();
-            updateDTO.setProfilePictureUrl(null);
-            BaseUserResponse updatedUser = userService.updateUser(id, updateDTO);
+            // Delete the files from MinIO and the profile picture URL
+            BaseUserResponse updatedUser = userFileService.removeProfilePicture(id);
 
             logger.info("Removed profile picture from user");
             return new ResponseEntity<>(updatedUser, HttpStatus.OK);
@@ -0,0 +1,80 @@
+package fr.polytech.restcontroller;
+
+import fr.polytech.Util.Utils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.*;
+
+import static fr.polytech.constant.Env.STUB_LATENCY_MS;
+
+/**
+ * Local stub of the downstream APIs, only available with the "stub" profile.
+ * It answers the single and batch detailed lookups with placeholder details, after a simulated latency, so that
+ * the detailed user aggregation and the batch lookups can be tried without the real APIs.
+ */
+@RestController
+@Profile("stub")
+@RequestMapping("/stub")
+public class StubController {
+
+    private final Logger logger = LoggerFactory.getLogger(StubController.class);
+
+    private final long latencyMs = Utils.intFromEnv(STUB_LATENCY_MS, 50);
+
+    /**
+     * Get a placeholder detail
+     *
+     * @param api Name of the stubbed API
+     * @param id  Id of the detail
+     * @return ResponseEntity containing the placeholder detail
+     */
+    @GetMapping(value = {"/{api}/{id}", "/{api}/detailed/{id}"}, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> getDetail(@PathVariable("api") String api, @PathVariable("id") UUID id) {
+        logger.info("Stub {} lookup of {}", api, id);
+        simulateLatency();
+        return new ResponseEntity<>(detail(id), HttpStatus.OK);
+    }
+
+    /**
+     * Get placeholder details of many ids in one call
+     *
+     * @param api Name of the stubbed API
+     * @param ids Ids of the details
+     * @return ResponseEntity containing the placeholder details
+     */
+    @GetMapping(value = "/{api}/detailed", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<Map<String, Object>>> getDetails(@PathVariable("api") String api, @RequestParam("ids") List<UUID> ids) {
+        logger.info("Stub {} batch lookup of {} ids", api, ids.size());
+        simulateLatency();
+        return new ResponseEntity<>(ids.stream().map(this::detail).toList(), HttpStatus.OK);
+    }
+
+    /**
+     * Build a placeholder detail: only the id is set, the other fields keep their default values.
+     *
+     * @param id Id of the detail
+     * @return Placeholder detail
+     */
+    private Map<String, Object> detail(UUID id) {
+        Map<String, Object> detail = new HashMap<>();
+        detail.put("id", id);
+        return detail;
+    }
+
+    /**
+     * Wait for the simulated latency of a call.
+     */
+    private void simulateLatency() {
+        try {
+            Thread.sleep(latencyMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
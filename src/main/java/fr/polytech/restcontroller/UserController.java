@@ -10,6 +10,7 @@ import fr.polytech.model.response.SearchedRecruiter;
 import fr.polytech.model.response.user.BaseUserResponse;
 import fr.polytech.model.response.user.detailed.DetailedBaseUserResponse;
 import fr.polytech.model.response.user.plan.PlanUser;
+import fr.polytech.service.DetailedUserCacheService;
 import fr.polytech.service.MatchingService;
 import fr.polytech.service.UserService;
 import jakarta.ws.rs.Consumes;
@@ -17,11 +18,14 @@ import jakarta.ws.rs.Produces;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.UUID;
@@ -39,6 +43,9 @@ public class UserController {
     @Autowired
     private MatchingService matchingService;
 
+    @Autowired
+    private DetailedUserCacheService detailedUserCacheService;
+
     /**
      * Login endpoint
      *
@@ -163,16 +170,25 @@ public class UserController {
     }
 
     /**
-     * Get all users
+     * Get a page of users, the first USER_PAGE_SIZE users by default. All the users can be read with the stream
+     * endpoint.
      *
+     * @param first Index of the first user to get
+     * @param max   Maximum number of users to get
      * @return ResponseEntity containing the response from the API
      */
     @GetMapping("/")
     @IsAdmin
     @Produces(MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<List<BaseUserResponse>> getAllUsers() {
+    public ResponseEntity<List<BaseUserResponse>> getAllUsers(
+            @RequestParam(value = "first", required = false) Integer first,
+            @RequestParam(value = "max", required = false) Integer max
+    ) {
         try {
-            List<BaseUserResponse> response = userService.getUsers();
+            List<BaseUserResponse> response = userService.getUsers(
+                    first != null ? first : 0,
+                    max != null ? max : UserService.USER_PAGE_SIZE
+            );
             logger.info("Users get completed");
             return new ResponseEntity<>(response, HttpStatus.OK);
         } catch (HttpClientErrorException e) {
@@ -181,6 +197,22 @@ public class UserController {
         }
     }
 
+    /**
+     * Stream all users as newline-delimited JSON, without loading the whole realm in memory
+     *
+     * @return ResponseEntity containing the streamed users
+     */
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @IsAdmin
+    @Produces(MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllUsers() {
+        logger.info("Users stream started");
+        StreamingResponseBody body = outputStream -> userService.streamUsers(outputStream);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
     /**
      * Match user availabilities with a job offer.
      * The quantity of candidates and their attributes depends on the plan of the recruiter.
@@ -251,18 +283,33 @@ public class UserController {
     /**
      * Get detailed user by id
      *
-     * @param token Access token
-     * @param id    User id
+     * @param token   Access token
+     * @param id      User id
+     * @param partial If true, details that cannot be retrieved are marked in the errors of the response instead of failing
+     * @param request Web request, used to answer 304 Not Modified when the If-None-Match ETag is still valid
      * @return ResponseEntity containing the response from the API
      */
     @GetMapping("/detailed/{id}")
     @IsSender
     @Produces(MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<DetailedBaseUserResponse> getDetailedUserById(@RequestHeader("Authorization") String token, @PathVariable("id") String id) {
+    public ResponseEntity<DetailedBaseUserResponse> getDetailedUserById(@RequestHeader("Authorization") String token, @PathVariable("id") String id, @RequestParam(value = "partial", defaultValue = "false") boolean partial, WebRequest request) {
         try {
-            DetailedBaseUserResponse response = userService.getDetailedUserById(id, token);
+            String cachedEtag = detailedUserCacheService.getEtag(id);
+            if (cachedEtag != null && request.checkNotModified(cachedEtag)) {
+                logger.info("User not modified");
+                return null;
+            }
+
+            DetailedBaseUserResponse response = userService.getDetailedUserById(id, token, partial);
             logger.info("User get completed");
-            return new ResponseEntity<>(response, HttpStatus.OK);
+            String etag = detailedUserCacheService.getEtag(id, response);
+            if (etag == null) {
+                return new ResponseEntity<>(response, HttpStatus.OK);
+            }
+            return ResponseEntity.ok()
+                    .eTag(etag)
+                    .cacheControl(CacheControl.noCache().cachePrivate())
+                    .body(response);
         } catch (HttpClientErrorException e) {
             logger.error("Error while getting user " + id + ". Error: " + e.getStatusCode());
             return new ResponseEntity<>(null, e.getStatusCode());
@@ -0,0 +1,117 @@
+package fr.polytech.service;
+
+import fr.polytech.Util.Utils;
+import org.keycloak.admin.client.Keycloak;
+import org.keycloak.representations.AccessTokenResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+
+import static fr.polytech.constant.Env.ADMIN_TOKEN_REFRESH_MARGIN_MS;
+
+/**
+ * Access token of the admin account, used for service-to-service calls.
+ * The token is cached and refreshed in the background shortly before it expires, so that callers never wait for
+ * Keycloak. The refreshed token is also the one used by the shared Keycloak admin client.
+ */
+@Service
+public class AdminTokenService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdminTokenService.class);
+
+    @Autowired
+    private Keycloak keycloak;
+
+    private final long refreshMarginMs = Utils.intFromEnv(ADMIN_TOKEN_REFRESH_MARGIN_MS, 30000);
+
+    /**
+     * Cached token with its expiration time
+     */
+    private static class CachedToken {
+        private final String token;
+        private final long expiresAt;
+
+        private CachedToken(String token, long expiresAt) {
+            this.token = token;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private volatile CachedToken cachedToken;
+
+    /**
+     * Get the admin access token.
+     *
+     * @return String - Bearer access token
+     * @throws HttpClientErrorException if no valid token is cached and a new one cannot be retrieved
+     */
+    public String getAccessToken() throws HttpClientErrorException {
+        CachedToken token = cachedToken;
+        if (token == null || token.expiresAt <= System.currentTimeMillis()) {
+            // Only happens before the first refresh or if the background refresh keeps failing
+            token = refresh();
+        }
+        return "Bearer " + token.token;
+    }
+
+    /**
+     * Refresh the token if it expires within the refresh margin.
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${ADMIN_TOKEN_CHECK_MS:5000}")
+    public void refreshIfNeeded() {
+        CachedToken token = cachedToken;
+        if (token != null && token.expiresAt - refreshMarginMs > System.currentTimeMillis()) {
+            return;
+        }
+        try {
+            refresh();
+        } catch (HttpClientErrorException e) {
+            logger.error("Error while refreshing admin access token: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Get a new token from Keycloak and cache it.
+     * The token is refreshed with the refresh token, and a new one is granted if the refresh fails, e.g. because the
+     * refresh token or the SSO session expired or Keycloak was restarted.
+     *
+     * @return Cached token
+     * @throws HttpClientErrorException if the token cannot be retrieved
+     */
+    private synchronized CachedToken refresh() throws HttpClientErrorException {
+        // Another thread may have refreshed the token while this one was waiting
+        CachedToken token = cachedToken;
+        if (token != null && token.expiresAt - refreshMarginMs > System.currentTimeMillis()) {
+            return token;
+        }
+        try {
+            long requestedAt = System.currentTimeMillis();
+            AccessTokenResponse response = token == null ? keycloak.tokenManager().grantToken() : refreshOrGrant();
+            token = new CachedToken(response.getToken(), requestedAt + response.getExpiresIn() * 1000);
+            cachedToken = token;
+            logger.info("Admin access token refreshed, expires in {} s", response.getExpiresIn());
+            return token;
+        } catch (RuntimeException e) {
+            throw new HttpClientErrorException(HttpStatus.SERVICE_UNAVAILABLE, "Admin access token cannot be retrieved: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Refresh the token with the refresh token, or grant a new one if the refresh fails.
+     *
+     * @return Token response from Keycloak
+     * @throws RuntimeException if no token can be granted either
+     */
+    private AccessTokenResponse refreshOrGrant() {
+        try {
+            return keycloak.tokenManager().refreshToken();
+        } catch (RuntimeException e) {
+            logger.warn("Admin access token cannot be refreshed, granting a new one: " + e.getMessage());
+            return keycloak.tokenManager().grantToken();
+        }
+    }
+}
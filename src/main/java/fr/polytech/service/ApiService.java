@@ -1,5 +1,7 @@
 package fr.polytech.service;
 
+import fr.polytech.Util.Utils;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -8,6 +10,13 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static fr.polytech.constant.Env.*;
+
 @Service
 public class ApiService {
 
@@ -16,6 +25,41 @@ public class ApiService {
     @Autowired
     private RestTemplate restTemplate;
 
+    @Autowired
+    private ExecutorService apiCallExecutor;
+
+    @Autowired
+    private AdminTokenService adminTokenService;
+
+    private final boolean batchEnabled = Boolean.parseBoolean(System.getenv(BATCH_LOOKUP_ENABLED));
+    private final long batchWindowMs = Utils.intFromEnv(BATCH_WINDOW_MS, 5);
+    private final int batchMaxSize = Utils.intFromEnv(BATCH_MAX_SIZE, 50);
+
+    /**
+     * Batches waiting for their window to end, by API and response type
+     */
+    private final Map<String, Batch<?>> pendingBatches = new HashMap<>();
+
+    private final ScheduledExecutorService batchScheduler = Executors.newSingleThreadScheduledExecutor();
+
+    /**
+     * Detailed lookups of an API that are sent in a single call
+     *
+     * @param <T> Type of the details
+     */
+    private static class Batch<T> {
+        private final String apiUri;
+        private final Class<T> responseType;
+        private final Function<T, UUID> idGetter;
+        private final Map<UUID, List<CompletableFuture<T>>> requests = new LinkedHashMap<>();
+
+        private Batch(String apiUri, Class<T> responseType, Function<T, UUID> idGetter) {
+            this.apiUri = apiUri;
+            this.responseType = responseType;
+            this.idGetter = idGetter;
+        }
+    }
+
     /**
      * Make an API call.
      *
@@ -39,6 +83,114 @@ public class ApiService {
         }
     }
 
+    /**
+     * Get the detail of an id from an API.
+     * When batch lookups are enabled, the requests made to the same API within a short window are coalesced into
+     * a single call to apiUri/detailed?ids=..., otherwise apiUri/detailed/{id} is called.
+     * A batch mixes the lookups of several requests, so it is sent with the admin access token: the caller token is
+     * only checked to be a bearer token, the caller being authorized by the endpoint that needs the details, like
+     * for the detailed users that are cached for every caller.
+     *
+     * @param apiUri       URI of the API
+     * @param id           Id of the detail
+     * @param responseType Class of the detail
+     * @param idGetter     Function returning the id of a detail, used to dispatch the batch response
+     * @param token        String - Access token used to call the API when batch lookups are disabled
+     * @param <T>          Type of the detail
+     * @return Future of the detail, failed with an HttpClientErrorException if the API returns an error or if the
+     * detail is missing from the batch response
+     */
+    public <T> CompletableFuture<T> getDetailed(String apiUri, UUID id, Class<T> responseType, Function<T, UUID> idGetter, String token) {
+        if (!batchEnabled) {
+            return CompletableFuture.supplyAsync(() -> makeApiCall(apiUri + "/detailed/" + id, HttpMethod.GET, responseType, token, null), apiCallExecutor);
+        }
+
+        CompletableFuture<T> future = new CompletableFuture<>();
+        if (token == null || !token.startsWith("Bearer ")) {
+            future.completeExceptionally(new HttpClientErrorException(HttpStatus.UNAUTHORIZED));
+            return future;
+        }
+        String key = apiUri + "|" + responseType.getName();
+        Batch<T> fullBatch = null;
+        synchronized (pendingBatches) {
+            @SuppressWarnings("unchecked")
+            Batch<T> batch = (Batch<T>) pendingBatches.get(key);
+            if (batch == null) {
+                batch = new Batch<>(apiUri, responseType, idGetter);
+                pendingBatches.put(key, batch);
+                Batch<T> scheduledBatch = batch;
+                batchScheduler.schedule(() -> flush(key, scheduledBatch), batchWindowMs, TimeUnit.MILLISECONDS);
+            }
+            batch.requests.computeIfAbsent(id, requestId -> new ArrayList<>()).add(future);
+            if (batch.requests.size() >= batchMaxSize) {
+                pendingBatches.remove(key);
+                fullBatch = batch;
+            }
+        }
+        if (fullBatch != null) {
+            Batch<T> batchToSend = fullBatch;
+            apiCallExecutor.execute(() -> sendBatch(batchToSend));
+        }
+        return future;
+    }
+
+    /**
+     * Send a batch at the end of its window, unless it was already sent because it was full.
+     *
+     * @param key   Key of the batch
+     * @param batch Batch to send
+     */
+    private void flush(String key, Batch<?> batch) {
+        synchronized (pendingBatches) {
+            if (!pendingBatches.remove(key, batch)) {
+                return;
+            }
+        }
+        apiCallExecutor.execute(() -> sendBatch(batch));
+    }
+
+    /**
+     * Call the batch endpoint of an API with the admin access token and complete the futures of the batch.
+     *
+     * @param batch Batch to send
+     * @param <T>   Type of the details
+     */
+    private <T> void sendBatch(Batch<T> batch) {
+        String ids = batch.requests.keySet().stream().map(UUID::toString).collect(Collectors.joining(","));
+        try {
+            @SuppressWarnings("unchecked")
+            Class<T[]> arrayType = (Class<T[]>) batch.responseType.arrayType();
+            T[] details = makeApiCall(batch.apiUri + "/detailed?ids=" + ids, HttpMethod.GET, arrayType, adminTokenService.getAccessToken(), null);
+
+            Map<UUID, T> detailsById = new HashMap<>();
+            for (T detail : details) {
+                if (detail != null) {
+                    detailsById.put(batch.idGetter.apply(detail), detail);
+                }
+            }
+            batch.requests.forEach((id, futures) -> {
+                T detail = detailsById.get(id);
+                for (CompletableFuture<T> future : futures) {
+                    if (detail != null) {
+                        future.complete(detail);
+                    } else {
+                        future.completeExceptionally(new HttpClientErrorException(HttpStatus.NOT_FOUND, "Detail " + id + " not found"));
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            batch.requests.values().forEach(futures -> futures.forEach(future -> future.completeExceptionally(e)));
+        }
+    }
+
+    /**
+     * Stop the batch scheduler when the application shuts down.
+     */
+    @PreDestroy
+    public void shutdown() {
+        batchScheduler.shutdownNow();
+    }
+
     /**
      * Create headers for API calls.
      *
@@ -0,0 +1,126 @@
+package fr.polytech.service;
+
+import fr.polytech.Util.Utils;
+import fr.polytech.model.AvailabilityDTO;
+import fr.polytech.model.response.user.CandidateUserResponse;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static fr.polytech.constant.Env.*;
+
+/**
+ * Fetch availabilities of many candidates concurrently.
+ * The number of parallel calls to the availability API is bounded, and each fetch has a deadline:
+ * availabilities that are not fetched before the deadline (or that fail) are left out of the result.
+ */
+@Service
+public class AvailabilityFetchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AvailabilityFetchService.class);
+
+    @Autowired
+    private ApiService apiService;
+
+    private static final String availabilityApiUri = System.getenv(AVAILABILITY_API_URI);
+
+    private final int parallelism = Utils.intFromEnv(MATCHING_PARALLELISM, 16);
+    private final long timeoutMs = Utils.intFromEnv(MATCHING_TIMEOUT_MS, 5000);
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+
+    /**
+     * Fetch the availabilities of the given candidates.
+     * Every candidate is present in the returned map, with the availabilities that could be fetched before the deadline.
+     *
+     * @param candidates List of candidates
+     * @param token      String - Access token used to call the availability API
+     * @return Map of candidates and their availabilities
+     * @throws HttpClientErrorException if the fetch is interrupted
+     */
+    public Map<CandidateUserResponse, List<AvailabilityDTO>> fetchAvailabilities(List<CandidateUserResponse> candidates, String token) throws HttpClientErrorException {
+        return fetchAvailabilities(candidates, token, timeoutMs);
+    }
+
+    /**
+     * Fetch the availabilities of the given candidates with a specific deadline.
+     *
+     * @param candidates List of candidates
+     * @param token      String - Access token used to call the availability API
+     * @param timeoutMs  Deadline of the whole fetch, in milliseconds
+     * @return Map of candidates and their availabilities
+     * @throws HttpClientErrorException if the fetch is interrupted
+     */
+    public Map<CandidateUserResponse, List<AvailabilityDTO>> fetchAvailabilities(List<CandidateUserResponse> candidates, String token, long timeoutMs) throws HttpClientErrorException {
+        Map<CandidateUserResponse, List<AvailabilityDTO>> usersAvailabilities = new HashMap<>();
+        List<CandidateUserResponse> owners = new ArrayList<>();
+        List<Callable<AvailabilityDTO>> tasks = new ArrayList<>();
+
+        for (CandidateUserResponse candidate : candidates) {
+            usersAvailabilities.put(candidate, new ArrayList<>());
+            if (candidate.getAvailabilityIdList() == null) {
+                continue;
+            }
+            for (UUID availabilityId : candidate.getAvailabilityIdList()) {
+                String uri = availabilityApiUri + "/" + availabilityId;
+                owners.add(candidate);
+                tasks.add(() -> apiService.makeApiCall(uri, HttpMethod.GET, AvailabilityDTO.class, token, null));
+            }
+        }
+
+        if (tasks.isEmpty()) {
+            return usersAvailabilities;
+        }
+
+        logger.info("Fetching {} availabilities of {} candidates with parallelism {}", tasks.size(), candidates.size(), parallelism);
+
+        List<Future<AvailabilityDTO>> futures;
+        try {
+            // Tasks still running when the deadline is reached are cancelled
+            futures = executor.invokeAll(tasks, timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HttpClientErrorException(HttpStatus.SERVICE_UNAVAILABLE, "Availability fetch interrupted");
+        }
+
+        int missing = 0;
+        for (int i = 0; i < futures.size(); i++) {
+            Future<AvailabilityDTO> future = futures.get(i);
+            if (future.isCancelled()) {
+                missing++;
+                continue;
+            }
+            try {
+                usersAvailabilities.get(owners.get(i)).add(future.get());
+            } catch (ExecutionException e) {
+                missing++;
+                logger.warn("Error while fetching availability of user " + owners.get(i).getId() + ": " + e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new HttpClientErrorException(HttpStatus.SERVICE_UNAVAILABLE, "Availability fetch interrupted");
+            }
+        }
+
+        if (missing > 0) {
+            logger.warn("{} of {} availabilities could not be fetched within {} ms, returning partial result", missing, tasks.size(), timeoutMs);
+        }
+
+        return usersAvailabilities;
+    }
+
+    /**
+     * Stop the fetch executor when the application shuts down.
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,311 @@
+package fr.polytech.service;
+
+import fr.polytech.Util.AvailabilityDateIndex;
+import fr.polytech.Util.PlaceMatcher;
+import fr.polytech.Util.Utils;
+import fr.polytech.model.AvailabilityDTO;
+import fr.polytech.model.response.user.CandidateUserResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static fr.polytech.constant.Env.AVAILABILITY_INDEX_LOAD_TIMEOUT_MS;
+import static fr.polytech.constant.Roles.CANDIDATE;
+
+/**
+ * In-memory index of the availabilities of every candidate.
+ * It is kept up to date by the availability add/remove paths and by the availability-topic Kafka listener,
+ * and rebuilt from the availability API at startup and periodically to recover missed events.
+ */
+@Service
+public class AvailabilityIndexService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AvailabilityIndexService.class);
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private AvailabilityFetchService availabilityFetchService;
+
+    @Autowired
+    private MatchCacheService matchCacheService;
+
+    private final long loadTimeoutMs = Utils.intFromEnv(AVAILABILITY_INDEX_LOAD_TIMEOUT_MS, 60000);
+
+    /**
+     * Availabilities by candidate id, then by availability id
+     */
+    private final Map<UUID, Map<UUID, AvailabilityDTO>> availabilitiesByCandidate = new ConcurrentHashMap<>();
+
+    private volatile boolean loaded = false;
+
+    private AvailabilityDateIndex dateIndex;
+    private volatile boolean dateIndexDirty = true;
+
+    private final PlaceMatcher placeMatcher = new PlaceMatcher();
+
+    /**
+     * Add or replace an availability of a candidate.
+     * Nothing is invalidated if an availability with the same dates and places is already indexed.
+     *
+     * @param candidateId  Candidate id
+     * @param availability Availability to index
+     */
+    public synchronized void addAvailability(UUID candidateId, AvailabilityDTO availability) {
+        if (candidateId == null || availability == null || availability.getId() == null) {
+            return;
+        }
+        Map<UUID, AvailabilityDTO> availabilities = availabilitiesByCandidate.computeIfAbsent(candidateId, key -> new ConcurrentHashMap<>());
+        AvailabilityDTO previous = availabilities.get(availability.getId());
+        if (previous != null && isSameIndexEntry(previous, availability)) {
+            return;
+        }
+        availabilities.put(availability.getId(), availability);
+        if (previous != null) {
+            placeMatcher.remove(previous.getId(), previous.getPlaceList());
+        }
+        placeMatcher.add(availability.getId(), availability.getPlaceList());
+        dateIndexDirty = true;
+        matchCacheService.onAvailabilitiesChanged(candidateId, List.of(availability));
+    }
+
+    /**
+     * Remove an availability of a candidate.
+     *
+     * @param candidateId    Candidate id
+     * @param availabilityId Availability id
+     */
+    public synchronized void removeAvailability(UUID candidateId, UUID availabilityId) {
+        if (candidateId == null || availabilityId == null) {
+            return;
+        }
+        Map<UUID, AvailabilityDTO> availabilities = availabilitiesByCandidate.get(candidateId);
+        AvailabilityDTO previous = availabilities == null ? null : availabilities.remove(availabilityId);
+        if (previous == null) {
+            return;
+        }
+        if (availabilities.isEmpty()) {
+            availabilitiesByCandidate.remove(candidateId);
+        }
+        placeMatcher.remove(previous.getId(), previous.getPlaceList());
+        dateIndexDirty = true;
+        matchCacheService.onAvailabilitiesChanged(candidateId, Collections.emptyList());
+    }
+
+    /**
+     * Replace all the availabilities of a candidate.
+     * Nothing is invalidated if the indexed availabilities have the same ids, dates and places, which is the case
+     * for most candidates during a reconciliation.
+     *
+     * @param candidateId    Candidate id
+     * @param availabilities Availabilities of the candidate
+     */
+    public synchronized void replaceAvailabilities(UUID candidateId, List<AvailabilityDTO> availabilities) {
+        Map<UUID, AvailabilityDTO> indexed = new ConcurrentHashMap<>();
+        for (AvailabilityDTO availability : availabilities) {
+            if (availability != null && availability.getId() != null) {
+                indexed.put(availability.getId(), availability);
+            }
+        }
+        Map<UUID, AvailabilityDTO> current = availabilitiesByCandidate.get(candidateId);
+        if (current == null ? indexed.isEmpty() : isSameIndexEntry(current, indexed)) {
+            return;
+        }
+        Map<UUID, AvailabilityDTO> previous = indexed.isEmpty() ? availabilitiesByCandidate.remove(candidateId) : availabilitiesByCandidate.put(candidateId, indexed);
+        if (previous != null) {
+            previous.values().forEach(availability -> placeMatcher.remove(availability.getId(), availability.getPlaceList()));
+        }
+        indexed.values().forEach(availability -> placeMatcher.add(availability.getId(), availability.getPlaceList()));
+        dateIndexDirty = true;
+        matchCacheService.onAvailabilitiesChanged(candidateId, indexed.values());
+    }
+
+    /**
+     * Remove all the availabilities of the candidates that are not in the given set.
+     *
+     * @param candidateIds Ids of the candidates to keep
+     */
+    private synchronized void retainCandidates(Set<UUID> candidateIds) {
+        for (UUID candidateId : new ArrayList<>(availabilitiesByCandidate.keySet())) {
+            if (!candidateIds.contains(candidateId)) {
+                replaceAvailabilities(candidateId, Collections.emptyList());
+            }
+        }
+    }
+
+    /**
+     * Make sure the given candidates are indexed.
+     * Until the first load is done, or for candidates whose indexed availabilities do not match their availability
+     * id list, the availabilities are fetched from the availability API and indexed. Candidates whose availabilities
+     * could not all be fetched keep their current entries.
+     *
+     * @param candidates List of candidates
+     * @param token      String - Access token used if the availability API has to be called
+     * @throws HttpClientErrorException if an error occurs while calling the API
+     */
+    public void ensureIndexed(List<CandidateUserResponse> candidates, String token) throws HttpClientErrorException {
+        List<CandidateUserResponse> staleCandidates = candidates.stream()
+                .filter(candidate -> !loaded || !isUpToDate(candidate))
+                .toList();
+
+        if (!staleCandidates.isEmpty()) {
+            logger.info("{} candidates are not indexed, fetching their availabilities", staleCandidates.size());
+            availabilityFetchService.fetchAvailabilities(staleCandidates, token).forEach((candidate, availabilities) -> {
+                // A partial fetch must not replace the indexed availabilities
+                if (isComplete(candidate, availabilities)) {
+                    replaceAvailabilities(candidate.getId(), availabilities);
+                }
+            });
+        }
+    }
+
+    /**
+     * Find the indexed availabilities covering a period.
+     *
+     * @param startDate Start date of the period
+     * @param endDate   End date of the period
+     * @return Map of candidate ids and their availabilities covering the period
+     */
+    public Map<UUID, List<AvailabilityDTO>> findCovering(Date startDate, Date endDate) {
+        return getDateIndex().findCovering(startDate, endDate);
+    }
+
+    /**
+     * Find the indexed availabilities having a place contained in an address.
+     *
+     * @param address Address to scan
+     * @return Set of availability ids
+     */
+    public Set<UUID> findMatchingPlaces(String address) {
+        return placeMatcher.match(address);
+    }
+
+    /**
+     * Get the date index, rebuilding it if the availabilities changed since it was built.
+     *
+     * @return AvailabilityDateIndex
+     */
+    private synchronized AvailabilityDateIndex getDateIndex() {
+        if (dateIndexDirty) {
+            // Reset the flag first so that changes made during the build trigger another one
+            dateIndexDirty = false;
+            dateIndex = new AvailabilityDateIndex(availabilitiesByCandidate.entrySet()
+                    .stream()
+                    .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().values())));
+            logger.info("Availability date index rebuilt with {} availabilities", dateIndex.size());
+        }
+        return dateIndex;
+    }
+
+    /**
+     * Load the whole index from the availability API.
+     * It runs at startup (cold start) and then periodically to reconcile events that were missed.
+     * Candidates whose availabilities could not all be fetched keep their current entries.
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${AVAILABILITY_INDEX_SWEEP_MS:600000}")
+    public void reconcile() {
+        logger.info("Reconciling availability index");
+        try {
+            Set<UUID> candidateIds = new HashSet<>();
+            AtomicInteger incomplete = new AtomicInteger();
+
+            // Candidates are fetched one page of users at a time, only their ids are kept
+            userService.forEachUserPage(users -> {
+                List<CandidateUserResponse> candidates = users.stream()
+                        .filter(user -> CANDIDATE.equals(user.getRole()))
+                        .map(user -> (CandidateUserResponse) user)
+                        .toList();
+                if (candidates.isEmpty()) {
+                    return;
+                }
+
+                Map<CandidateUserResponse, List<AvailabilityDTO>> fetched = availabilityFetchService.fetchAvailabilities(candidates, userService.getAdminAccessToken(), loadTimeoutMs);
+                for (Map.Entry<CandidateUserResponse, List<AvailabilityDTO>> entry : fetched.entrySet()) {
+                    candidateIds.add(entry.getKey().getId());
+                    if (isComplete(entry.getKey(), entry.getValue())) {
+                        replaceAvailabilities(entry.getKey().getId(), entry.getValue());
+                    } else {
+                        incomplete.incrementAndGet();
+                    }
+                }
+            });
+
+            // Remove candidates that no longer exist
+            retainCandidates(candidateIds);
+
+            loaded = true;
+            logger.info("Availability index reconciled: {} candidates, {} incomplete", candidateIds.size(), incomplete.get());
+        } catch (RuntimeException e) {
+            logger.error("Error while reconciling availability index", e);
+        }
+    }
+
+    /**
+     * Check if the indexed availabilities of a candidate match its availability id list.
+     *
+     * @param candidate Candidate
+     * @return True if the index is up to date for this candidate, false otherwise
+     */
+    private boolean isUpToDate(CandidateUserResponse candidate) {
+        List<UUID> availabilityIds = candidate.getAvailabilityIdList();
+        Map<UUID, AvailabilityDTO> indexed = availabilitiesByCandidate.get(candidate.getId());
+        if (availabilityIds == null || availabilityIds.isEmpty()) {
+            return indexed == null;
+        }
+        return indexed != null && indexed.size() == availabilityIds.size() && indexed.keySet().containsAll(availabilityIds);
+    }
+
+    /**
+     * Check if two availabilities are indexed the same way, that is if they have the same dates and places.
+     *
+     * @param availability Indexed availability
+     * @param other        Other availability
+     * @return True if the dates and places are equal, false otherwise
+     */
+    private static boolean isSameIndexEntry(AvailabilityDTO availability, AvailabilityDTO other) {
+        return Objects.equals(availability.getStartDate(), other.getStartDate())
+                && Objects.equals(availability.getEndDate(), other.getEndDate())
+                && Objects.equals(availability.getPlaceList(), other.getPlaceList());
+    }
+
+    /**
+     * Check if two sets of availabilities are indexed the same way.
+     *
+     * @param availabilities Indexed availabilities by id
+     * @param others         Other availabilities by id
+     * @return True if both have the same ids with the same dates and places, false otherwise
+     */
+    private static boolean isSameIndexEntry(Map<UUID, AvailabilityDTO> availabilities, Map<UUID, AvailabilityDTO> others) {
+        if (availabilities.size() != others.size()) {
+            return false;
+        }
+        for (Map.Entry<UUID, AvailabilityDTO> entry : availabilities.entrySet()) {
+            AvailabilityDTO other = others.get(entry.getKey());
+            if (other == null || !isSameIndexEntry(entry.getValue(), other)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check if all the availabilities of a candidate were fetched.
+     *
+     * @param candidate      Candidate
+     * @param availabilities Fetched availabilities
+     * @return True if every availability of the candidate was fetched, false otherwise
+     */
+    private boolean isComplete(CandidateUserResponse candidate, List<AvailabilityDTO> availabilities) {
+        List<UUID> availabilityIds = candidate.getAvailabilityIdList();
+        return availabilities.size() == (availabilityIds == null ? 0 : availabilityIds.size());
+    }
+}
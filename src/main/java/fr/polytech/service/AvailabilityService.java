@@ -1,11 +1,7 @@
 package fr.polytech.service;
 
-import fr.polytech.Util.Utils;
 import fr.polytech.model.AvailabilityDTO;
-import fr.polytech.model.request.UpdateDTO;
 import fr.polytech.model.response.user.BaseUserResponse;
-import fr.polytech.model.response.user.CandidateUserResponse;
-import org.keycloak.admin.client.resource.UserResource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,11 +10,8 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.UUID;
-
 import static fr.polytech.constant.Env.AVAILABILITY_API_URI;
+import static fr.polytech.service.UserWriteQueueService.UserList.AVAILABILITY;
 
 @Service
 public class AvailabilityService {
@@ -33,6 +26,12 @@ public class AvailabilityService {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private AvailabilityIndexService availabilityIndexService;
+
+    @Autowired
+    private UserWriteQueueService userWriteQueueService;
+
     /**
      * Add an availability to a candidate.
      *
@@ -46,26 +45,13 @@ public class AvailabilityService {
 
         validateUser(id, token);
 
-        UserResource userResource = userService.getKeycloakUserResource(id);
-        BaseUserResponse userResponse = Utils.userRepresentationToUserResponse(userResource.toRepresentation());
-        CandidateUserResponse userToUpdate = (CandidateUserResponse) userResponse;
-
         AvailabilityDTO availabilityResponse = createAvailabilityRequest(availability, token);
 
-        List<UUID> availabilities = userToUpdate.getAvailabilityIdList();
-        if (availabilities == null) {
-            availabilities = new ArrayList<>();
-        }
-        availabilities.add(availabilityResponse.getId());
-
         // Update user
-        UpdateDTO updateDTO = new UpdateDTO();
-        updateDTO.setAvailabilityIdList(availabilities);
-        // Don't update the other fields
-        updateDTO.setReferenceIdList(userToUpdate.getReferenceIdList());
-        updateDTO.setExperienceIdList(userToUpdate.getExperienceIdList());
-        updateDTO.setReviewIdList(userToUpdate.getReviewIdList());
-        return userService.updateUser(id, updateDTO);
+        BaseUserResponse updatedUser = userWriteQueueService.addToList(id, AVAILABILITY, availabilityResponse.getId());
+
+        availabilityIndexService.addAvailability(updatedUser.getId(), availabilityResponse);
+        return updatedUser;
     }
 
     /**
@@ -82,30 +68,13 @@ public class AvailabilityService {
 
         validateUser(id, token);
 
-        UserResource userResource = userService.getKeycloakUserResource(id);
-        BaseUserResponse userResponse = Utils.userRepresentationToUserResponse(userResource.toRepresentation());
-        CandidateUserResponse userToUpdate = (CandidateUserResponse) userResponse;
-
-        logger.info("deleteAvailability: userToUpdate = " + userToUpdate);
-        List<UUID> availabilities = userToUpdate.getAvailabilityIdList();
-        logger.info("deleteAvailability: userToUpdate.availabilities = " + availabilities);
-        if (availabilities == null || !availabilities.contains(availability.getId())) {
-            throw new HttpClientErrorException(HttpStatus.NOT_FOUND, "Availability not found");
-        }
-        availabilities.remove(availability.getId());
-        logger.info("deleteAvailability: userToUpdate.availabilities.remove(availability.getId()) = " + availabilities);
-        // Update user
-        UpdateDTO updateDTO = new UpdateDTO();
-        updateDTO.setAvailabilityIdList(availabilities);
-        // Don't update the other fields
-        updateDTO.setReferenceIdList(userToUpdate.getReferenceIdList());
-        updateDTO.setExperienceIdList(userToUpdate.getExperienceIdList());
-        updateDTO.setReviewIdList(userToUpdate.getReviewIdList());
-
-        BaseUserResponse updatedUser = userService.updateUser(id, updateDTO);
+        // Update user, fails if the availability is not in the list
+        BaseUserResponse updatedUser = userWriteQueueService.removeFromList(id, AVAILABILITY, availability.getId());
 
         // Remove availability from availability API
         removeAvailabilityRequest(availability, token);
+
+        availabilityIndexService.removeAvailability(updatedUser.getId(), availability.getId());
         return updatedUser;
     }
 
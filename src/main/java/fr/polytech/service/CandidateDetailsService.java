@@ -0,0 +1,187 @@
+package fr.polytech.service;
+
+import fr.polytech.Util.Utils;
+import fr.polytech.model.aux.*;
+import fr.polytech.model.response.user.CandidateUserResponse;
+import fr.polytech.model.response.user.detailed.CandidateUserResponseDetailed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+import static fr.polytech.constant.Env.*;
+
+/**
+ * Aggregation of the details of a candidate.
+ * Every detail (address, references, experiences, availabilities, reviews) is requested concurrently and the
+ * profile is assembled when they all returned or when the deadline of the request is reached.
+ */
+@Service
+public class CandidateDetailsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CandidateDetailsService.class);
+
+    public static final String ADDRESS_SECTION = "address";
+    public static final String REFERENCE_SECTION = "referenceList";
+    public static final String EXPERIENCE_SECTION = "experienceList";
+    public static final String AVAILABILITY_SECTION = "availabilityList";
+    public static final String REVIEW_SECTION = "reviewList";
+
+    @Autowired
+    private ApiService apiService;
+
+    @Autowired
+    private ExecutorService apiCallExecutor;
+
+    private final long timeoutMs = Utils.intFromEnv(DETAILED_USER_TIMEOUT_MS, 5000);
+
+    /**
+     * Get the details of a candidate.
+     *
+     * @param candidate Candidate
+     * @param token     String - Access token used to call the APIs
+     * @param partial   If true, sections that failed or timed out are returned incomplete with an error marker,
+     *                  otherwise the first error fails the whole profile
+     * @return Detailed candidate
+     * @throws HttpClientErrorException if an error occurs while calling the APIs and partial is false, or with
+     *                                  GATEWAY_TIMEOUT if the details are not retrieved in time
+     */
+    public CandidateUserResponseDetailed getCandidateDetails(CandidateUserResponse candidate, String token, boolean partial) throws HttpClientErrorException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+
+        // Scatter: request every detail
+        CompletableFuture<AddressDTO> address = fetch(System.getenv(ADDRESS_API_URI) + "/" + candidate.getAddressId(), AddressDTO.class, token);
+        List<CompletableFuture<DetailedReferenceDTO>> references = fetchAll(System.getenv(REFERENCE_API_URI), candidate.getReferenceIdList(), DetailedReferenceDTO.class, DetailedReferenceDTO::getId, token);
+        List<CompletableFuture<DetailedExperienceDTO>> experiences = fetchAll(System.getenv(EXPERIENCE_API_URI), candidate.getExperienceIdList(), DetailedExperienceDTO.class, DetailedExperienceDTO::getId, token);
+        List<CompletableFuture<DetailedAvailabilityDTO>> availabilities = fetchAll(System.getenv(AVAILABILITY_API_URI), candidate.getAvailabilityIdList(), DetailedAvailabilityDTO.class, DetailedAvailabilityDTO::getId, token);
+        List<CompletableFuture<DetailedReviewDTO>> reviews = fetchAll(System.getenv(REVIEW_API_URI), candidate.getReviewIdList(), DetailedReviewDTO.class, DetailedReviewDTO::getId, token);
+
+        // Gather: wait for the details, in the order of the original lists
+        Map<String, String> errors = new LinkedHashMap<>();
+        try {
+            List<AddressDTO> addressList = gather(ADDRESS_SECTION, List.of(address), deadline, partial, errors);
+            CandidateUserResponseDetailed detailed = new CandidateUserResponseDetailed(
+                    candidate.getId(),
+                    candidate.getEmail(),
+                    candidate.getFirstName(),
+                    candidate.getLastName(),
+                    candidate.getUsername(),
+                    candidate.getRole(),
+                    candidate.getIsRegistered(),
+                    candidate.getGender(),
+                    candidate.getBirthdate(),
+                    candidate.getCitizenship(),
+                    candidate.getPhone(),
+                    addressList.isEmpty() ? null : addressList.get(0),
+                    candidate.getProfilePictureUrl(),
+                    candidate.getToBeRemoved(),
+                    candidate.getCvUrl(),
+                    candidate.getShortBio(),
+                    gather(REFERENCE_SECTION, references, deadline, partial, errors),
+                    gather(EXPERIENCE_SECTION, experiences, deadline, partial, errors),
+                    gather(AVAILABILITY_SECTION, availabilities, deadline, partial, errors),
+                    gather(REVIEW_SECTION, reviews, deadline, partial, errors)
+            );
+            if (!errors.isEmpty()) {
+                logger.warn("Candidate {} returned with incomplete sections: {}", candidate.getId(), errors);
+                detailed.setErrors(errors);
+            }
+            return detailed;
+        } catch (RuntimeException e) {
+            // Do not start the requests still waiting for a thread
+            address.cancel(false);
+            references.forEach(future -> future.cancel(false));
+            experiences.forEach(future -> future.cancel(false));
+            availabilities.forEach(future -> future.cancel(false));
+            reviews.forEach(future -> future.cancel(false));
+            throw e;
+        }
+    }
+
+    /**
+     * Request a detail on the API call executor.
+     *
+     * @param uri          URI of the detail
+     * @param responseType Class of the detail
+     * @param token        String - Access token used to call the API
+     * @param <T>          Type of the detail
+     * @return Future of the detail
+     */
+    private <T> CompletableFuture<T> fetch(String uri, Class<T> responseType, String token) {
+        return CompletableFuture.supplyAsync(() -> apiService.makeApiCall(uri, HttpMethod.GET, responseType, token, null), apiCallExecutor);
+    }
+
+    /**
+     * Request the details of a list of ids, batched with the other lookups of the same API when possible.
+     *
+     * @param apiUri       URI of the API
+     * @param ids          Ids of the details, may be null
+     * @param responseType Class of the details
+     * @param idGetter     Function returning the id of a detail
+     * @param token        String - Access token used to call the API
+     * @param <T>          Type of the details
+     * @return List of futures, in the order of the ids
+     */
+    private <T> List<CompletableFuture<T>> fetchAll(String apiUri, List<UUID> ids, Class<T> responseType, Function<T, UUID> idGetter, String token) {
+        if (ids == null) {
+            return Collections.emptyList();
+        }
+        return ids.stream()
+                .map(id -> apiService.getDetailed(apiUri, id, responseType, idGetter, token))
+                .toList();
+    }
+
+    /**
+     * Wait for the details of a section until the deadline.
+     *
+     * @param section  Name of the section
+     * @param futures  Futures of the details
+     * @param deadline Deadline, in System.nanoTime() units
+     * @param partial  If true, the details that failed are skipped and the section is marked in errors
+     * @param errors   Error markers by section
+     * @param <T>      Type of the details
+     * @return List of the retrieved details, in the order of the futures
+     * @throws HttpClientErrorException if a detail failed and partial is false
+     */
+    private <T> List<T> gather(String section, List<CompletableFuture<T>> futures, long deadline, boolean partial, Map<String, String> errors) throws HttpClientErrorException {
+        List<T> details = new ArrayList<>();
+        int failed = 0;
+        String lastError = null;
+        for (CompletableFuture<T> future : futures) {
+            try {
+                details.add(future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                future.cancel(false);
+                if (!partial) {
+                    throw new HttpClientErrorException(HttpStatus.GATEWAY_TIMEOUT, "Details of the user not retrieved in time");
+                }
+                failed++;
+                lastError = HttpStatus.GATEWAY_TIMEOUT.toString();
+            } catch (ExecutionException | CancellationException e) {
+                Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                if (!partial) {
+                    if (cause instanceof RuntimeException runtimeException) {
+                        throw runtimeException;
+                    }
+                    throw new HttpClientErrorException(HttpStatus.INTERNAL_SERVER_ERROR, cause.getMessage());
+                }
+                failed++;
+                lastError = cause instanceof HttpClientErrorException httpError ? httpError.getStatusCode().toString() : cause.getClass().getSimpleName();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new HttpClientErrorException(HttpStatus.SERVICE_UNAVAILABLE, "Interrupted while retrieving the details of the user");
+            }
+        }
+        if (failed > 0) {
+            errors.put(section, failed + "/" + futures.size() + " not retrieved (" + lastError + ")");
+        }
+        return details;
+    }
+}
@@ -0,0 +1,75 @@
+package fr.polytech.service;
+
+import fr.polytech.Util.TtlCache;
+import fr.polytech.Util.Utils;
+import fr.polytech.model.aux.CompanyDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+import static fr.polytech.constant.Env.*;
+
+@Service
+public class CompanyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CompanyService.class);
+
+    @Autowired
+    private ApiService apiService;
+
+    @Autowired
+    private ExecutorService apiCallExecutor;
+
+    private final String companyApiUri = System.getenv(COMPANY_API_URI);
+
+    /**
+     * Cache of the companies, by company id
+     */
+    private final TtlCache<UUID, CompanyDTO> companyCache = new TtlCache<>(
+            Utils.intFromEnv(COMPANY_CACHE_SIZE, 1000),
+            Utils.intFromEnv(COMPANY_CACHE_TTL_MS, 600000)
+    );
+
+    /**
+     * Get companies by id.
+     * Each company is requested at most once, companies missing from the cache are requested concurrently.
+     *
+     * @param companyIds Ids of the companies, possibly with duplicates
+     * @param token      String - Access token used to call the company API
+     * @return Map of company ids and companies
+     * @throws HttpClientErrorException if an error occurs while calling the API
+     */
+    public Map<UUID, CompanyDTO> getCompanies(Collection<UUID> companyIds, String token) throws HttpClientErrorException {
+        Map<UUID, CompanyDTO> companies = new HashMap<>();
+        Map<UUID, CompletableFuture<CompanyDTO>> requests = new HashMap<>();
+
+        for (UUID companyId : new HashSet<>(companyIds)) {
+            CompanyDTO company = companyCache.get(companyId);
+            if (company != null) {
+                companies.put(companyId, company);
+            } else {
+                String uri = companyApiUri + "/" + companyId;
+                requests.put(companyId, CompletableFuture.supplyAsync(() -> apiService.makeApiCall(uri, HttpMethod.GET, CompanyDTO.class, token, null), apiCallExecutor));
+            }
+        }
+
+        if (!requests.isEmpty()) {
+            logger.info("Requesting {} companies, {} found in cache", requests.size(), companies.size());
+        }
+
+        for (Map.Entry<UUID, CompletableFuture<CompanyDTO>> request : requests.entrySet()) {
+            CompanyDTO company = Utils.join(request.getValue());
+            companyCache.put(request.getKey(), company);
+            companies.put(request.getKey(), company);
+        }
+
+        return companies;
+    }
+}
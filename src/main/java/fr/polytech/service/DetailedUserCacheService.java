@@ -0,0 +1,168 @@
+package fr.polytech.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.polytech.Util.TtlCache;
+import fr.polytech.Util.Utils;
+import fr.polytech.model.response.user.detailed.DetailedBaseUserResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static fr.polytech.constant.Env.DETAILED_USER_CACHE_SIZE;
+import static fr.polytech.constant.Env.DETAILED_USER_CACHE_TTL_MS;
+
+/**
+ * Cache of the assembled detailed users, with their ETag.
+ * An entry is invalidated when the user is updated, on this instance or on another one through the
+ * user-invalidation-topic Kafka topic, and when one of its availabilities changes.
+ */
+@Service
+public class DetailedUserCacheService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DetailedUserCacheService.class);
+
+    public static final String INVALIDATION_TOPIC = "user-invalidation-topic";
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private KafkaTemplate<String, String> kafkaTemplate;
+
+    /**
+     * Detailed user with the ETag of its JSON representation
+     */
+    private static class CachedUser {
+        private final DetailedBaseUserResponse user;
+        private final String etag;
+
+        private CachedUser(DetailedBaseUserResponse user, String etag) {
+            this.user = user;
+            this.etag = etag;
+        }
+    }
+
+    private final TtlCache<String, CachedUser> cache = new TtlCache<>(
+            Utils.intFromEnv(DETAILED_USER_CACHE_SIZE, 5000),
+            Utils.intFromEnv(DETAILED_USER_CACHE_TTL_MS, 300000)
+    );
+
+    /**
+     * Incremented on every invalidation, so that users assembled before an invalidation are not cached
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Get the current generation, to read before assembling a user to cache.
+     *
+     * @return Current generation
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Get a cached detailed user.
+     *
+     * @param id User id
+     * @return Detailed user, or null if it is not cached
+     */
+    public DetailedBaseUserResponse get(String id) {
+        CachedUser cachedUser = cache.get(id);
+        return cachedUser == null ? null : cachedUser.user;
+    }
+
+    /**
+     * Get the ETag of a cached detailed user.
+     *
+     * @param id User id
+     * @return ETag, or null if the user is not cached
+     */
+    public String getEtag(String id) {
+        CachedUser cachedUser = cache.get(id);
+        return cachedUser == null ? null : cachedUser.etag;
+    }
+
+    /**
+     * Get the ETag of a detailed user, if this exact response is the cached one.
+     *
+     * @param id   User id
+     * @param user Detailed user returned to the client
+     * @return ETag, or null if this response is not cached
+     */
+    public String getEtag(String id, DetailedBaseUserResponse user) {
+        CachedUser cachedUser = cache.get(id);
+        return cachedUser != null && cachedUser.user == user ? cachedUser.etag : null;
+    }
+
+    /**
+     * Cache a detailed user, unless an invalidation happened since the given generation.
+     *
+     * @param id         User id
+     * @param user       Detailed user
+     * @param generation Generation read before assembling the user
+     */
+    public void put(String id, DetailedBaseUserResponse user, long generation) {
+        String etag = computeEtag(user);
+        if (etag == null) {
+            return;
+        }
+        synchronized (this.generation) {
+            if (this.generation.get() == generation) {
+                cache.put(id, new CachedUser(user, etag));
+            }
+        }
+    }
+
+    /**
+     * Invalidate a detailed user on every instance.
+     *
+     * @param id User id
+     */
+    public void invalidate(String id) {
+        evict(id);
+        try {
+            kafkaTemplate.send(INVALIDATION_TOPIC, id);
+        } catch (RuntimeException e) {
+            // Other instances still expire the entry with the time to live
+            logger.warn("Error while broadcasting invalidation of user " + id + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Invalidate a detailed user on this instance only.
+     *
+     * @param id User id
+     */
+    public void evict(String id) {
+        synchronized (generation) {
+            generation.incrementAndGet();
+            cache.invalidate(id);
+        }
+    }
+
+    /**
+     * Compute the ETag of a detailed user from its JSON representation.
+     *
+     * @param user Detailed user
+     * @return Quoted ETag, or null if the user cannot be serialized
+     */
+    private String computeEtag(DetailedBaseUserResponse user) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(user));
+            return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 16)) + "\"";
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            logger.warn("Error while computing ETag of user " + user.getId() + ": " + e.getMessage());
+            return null;
+        }
+    }
+}
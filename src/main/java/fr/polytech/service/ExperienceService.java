@@ -1,11 +1,7 @@
 package fr.polytech.service;
 
-import fr.polytech.Util.Utils;
 import fr.polytech.model.ExperienceDTO;
-import fr.polytech.model.request.UpdateDTO;
 import fr.polytech.model.response.user.BaseUserResponse;
-import fr.polytech.model.response.user.CandidateUserResponse;
-import org.keycloak.admin.client.resource.UserResource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,11 +10,12 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.UUID;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 
 import static fr.polytech.constant.Env.EXPERIENCE_API_URI;
+import static fr.polytech.service.UserWriteQueueService.UserList.EXPERIENCE;
 
 @Service
 public class ExperienceService {
@@ -33,6 +30,12 @@ public class ExperienceService {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private ExecutorService apiCallExecutor;
+
+    @Autowired
+    private UserWriteQueueService userWriteQueueService;
+
     /**
      * Add an experience to a candidate.
      *
@@ -46,59 +49,101 @@ public class ExperienceService {
 
         validateUser(id, token);
 
-        UserResource userResource = userService.getKeycloakUserResource(id);
-        BaseUserResponse userResponse = Utils.userRepresentationToUserResponse(userResource.toRepresentation());
-        CandidateUserResponse userToUpdate = (CandidateUserResponse) userResponse;
-
-        logger.info("User to update: " + userToUpdate);
-
         ExperienceDTO experienceResponse = createExperienceRequest(experience, token);
-        List<UUID> experiences = userToUpdate.getExperienceIdList();
-
-        if (experiences == null) {
-            experiences = new ArrayList<>();
-        }
-
-        experiences.add(experienceResponse.getId());
-
-        logger.info("List of experiences: " + experiences);
 
         // Update user
-        UpdateDTO updateDTO = new UpdateDTO();
-        updateDTO.setExperienceIdList(experiences);
-        // Don't update the other fields
-        updateDTO.setReferenceIdList(userToUpdate.getReferenceIdList());
-        updateDTO.setAvailabilityIdList(userToUpdate.getAvailabilityIdList());
-        updateDTO.setReviewIdList(userToUpdate.getReviewIdList());
-        return userService.updateUser(id, updateDTO);
+        return userWriteQueueService.addToList(id, EXPERIENCE, experienceResponse.getId());
     }
 
     public UUID addExperienceForUserManager(String id, ExperienceDTO experience, String token) {
         logger.info("Adding experience to user with ID " + id);
 
-        UserResource userResource = userService.getKeycloakUserResource(id);
-        BaseUserResponse userResponse = Utils.userRepresentationToUserResponse(userResource.toRepresentation());
-        CandidateUserResponse userToUpdate = (CandidateUserResponse) userResponse;
-
-        logger.info("User to update: " + userToUpdate);
+        // Fail before creating the experience if the user does not exist
+        userService.getUserById(id);
 
         ExperienceDTO experienceResponse = createExperienceRequest(experience, token);
-        List<UUID> experiences = userToUpdate.getExperienceIdList();
 
-        if (experiences == null) {
-            experiences = new ArrayList<>();
-        }
+        // Update user
+        userWriteQueueService.addToList(id, EXPERIENCE, experienceResponse.getId());
 
-        experiences.add(experienceResponse.getId());
+        return experienceResponse.getId();
+    }
 
-        logger.info("List of experiences: " + experiences);
+    /**
+     * Add experiences to many candidates, e.g. during a bulk import.
+     * All the experiences are created concurrently in the experience API, then every candidate is updated once
+     * with all its new experiences.
+     * The id of every created experience is set on it, even if it could not be added to its candidate. Experiences
+     * that already have an id, created by a previous attempt, are not created again, and an experience already in
+     * the list of its candidate is not added twice, so that an attempt can be retried.
+     *
+     * @param experiencesByUser Experiences to add, by user id
+     * @param token             String - Access token used to call the experience API
+     * @return Ids of the experiences by user id, in the order of the given experiences, null for the experiences
+     * that could not be created or added to their candidate
+     */
+    public Map<String, List<UUID>> addExperiencesForUsersManager(Map<String, List<ExperienceDTO>> experiencesByUser, String token) {
+        logger.info("Adding experiences to " + experiencesByUser.size() + " users");
+
+        // Create all the experiences
+        Map<String, List<CompletableFuture<UUID>>> creations = new LinkedHashMap<>();
+        experiencesByUser.forEach((id, experiences) -> creations.put(id, experiences.stream()
+                .map(experience -> createExperience(id, experience, token))
+                .toList()));
+
+        // Update every user once with its created experiences
+        Map<String, CompletableFuture<List<UUID>>> updates = new LinkedHashMap<>();
+        creations.forEach((id, futures) -> updates.put(id, CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                .thenApplyAsync(ignored -> addExperienceIds(id, futures.stream().map(CompletableFuture::join).toList()), apiCallExecutor)));
+
+        Map<String, List<UUID>> createdIds = new LinkedHashMap<>();
+        updates.forEach((id, update) -> createdIds.put(id, update.join()));
+        return createdIds;
+    }
 
-        // Update user
-        UpdateDTO updateDTO = new UpdateDTO();
-        updateDTO.setExperienceIdList(experiences);
-        userService.updateUser(id, updateDTO);
+    /**
+     * Create an experience on the API call executor, unless it already has an id, and set the id of the created
+     * experience on it.
+     *
+     * @param id         User id of the candidate
+     * @param experience Experience to create
+     * @param token      String - Access token used to call the experience API
+     * @return Future of the experience id, completed with null if the experience could not be created
+     */
+    private CompletableFuture<UUID> createExperience(String id, ExperienceDTO experience, String token) {
+        if (experience.getId() != null) {
+            return CompletableFuture.completedFuture(experience.getId());
+        }
+        return CompletableFuture.supplyAsync(() -> {
+                    UUID createdId = createExperienceRequest(experience, token).getId();
+                    experience.setId(createdId);
+                    return createdId;
+                }, apiCallExecutor)
+                .exceptionally(e -> {
+                    logger.error("Error while creating experience for user " + id + ": " + e.getMessage());
+                    return null;
+                });
+    }
 
-        return experienceResponse.getId();
+    /**
+     * Add created experiences to a candidate with a single update.
+     *
+     * @param id            User id of the candidate
+     * @param experienceIds Ids of the created experiences, null for the ones that could not be created
+     * @return The given ids, or only nulls if the candidate could not be updated
+     */
+    private List<UUID> addExperienceIds(String id, List<UUID> experienceIds) {
+        List<UUID> createdIds = experienceIds.stream().filter(Objects::nonNull).toList();
+        if (createdIds.isEmpty()) {
+            return experienceIds;
+        }
+        try {
+            userWriteQueueService.addAllToList(id, EXPERIENCE, createdIds);
+            return experienceIds;
+        } catch (RuntimeException e) {
+            logger.error("Error while adding experiences " + createdIds + " to user " + id + ": " + e.getMessage());
+            return Collections.nCopies(experienceIds.size(), null);
+        }
     }
 
     /**
@@ -115,25 +160,8 @@ public class ExperienceService {
 
         validateUser(id, token);
 
-        UserResource userResource = userService.getKeycloakUserResource(id);
-        BaseUserResponse userResponse = Utils.userRepresentationToUserResponse(userResource.toRepresentation());
-        CandidateUserResponse userToUpdate = (CandidateUserResponse) userResponse;
-
-        List<UUID> experiences = userToUpdate.getExperienceIdList();
-        if (experiences == null || !experiences.contains(experience.getId())) {
-            throw new HttpClientErrorException(HttpStatus.NOT_FOUND, "Experience not found in user");
-        }
-        experiences.remove(experience.getId());
-
-        // Update user
-        UpdateDTO updateDTO = new UpdateDTO();
-        updateDTO.setExperienceIdList(experiences);
-        // Don't update the other fields
-        updateDTO.setReferenceIdList(userToUpdate.getReferenceIdList());
-        updateDTO.setAvailabilityIdList(userToUpdate.getAvailabilityIdList());
-        updateDTO.setReviewIdList(userToUpdate.getReviewIdList());
-
-        BaseUserResponse updatedUser = userService.updateUser(id, updateDTO);
+        // Update user, fails if the experience is not in the list
+        BaseUserResponse updatedUser = userWriteQueueService.removeFromList(id, EXPERIENCE, experience.getId());
 
         // Remove experience from experience API
         removeExperienceRequest(experience, token);
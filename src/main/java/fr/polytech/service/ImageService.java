@@ -0,0 +1,224 @@
+package fr.polytech.service;
+
+import fr.polytech.Util.Utils;
+import io.minio.errors.MinioException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+
+import javax.imageio.*;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static fr.polytech.constant.Env.*;
+import static fr.polytech.constant.Images.*;
+
+/**
+ * Service producing the resized variants of the pictures.
+ * The original picture is decoded once and every variant is a square JPEG cropped at the center of the picture.
+ */
+@Service
+public class ImageService {
+
+    private final Logger logger = LoggerFactory.getLogger(ImageService.class);
+
+    private static final float JPEG_QUALITY = 0.85f;
+
+    @Autowired
+    private MinioService minioService;
+
+    /**
+     * Maximum number of pixels of a decoded picture, a decoded pixel takes 4 bytes of heap
+     */
+    private final long maxPixels = Utils.intFromEnv(IMAGE_MAX_PIXELS, 16_000_000);
+
+    /**
+     * Permits to decode and resize a picture, bounding the heap taken by the decoded pictures
+     */
+    private final Semaphore decodePermits = new Semaphore(Utils.intFromEnv(IMAGE_DECODE_PARALLELISM, Runtime.getRuntime().availableProcessors()));
+
+    private final long decodeWaitMs = Utils.intFromEnv(IMAGE_DECODE_WAIT_MS, 30000);
+
+    /**
+     * Create the resized variants of a picture staged in MinIO, before the picture itself is published.
+     * At most IMAGE_DECODE_PARALLELISM pictures are decoded and resized at the same time, the variants are uploaded
+     * once the decoded picture is released.
+     *
+     * @param ownerId    User id
+     * @param upload     Checked upload of the picture
+     * @param objectName Name under which the picture will be published, the variants are named after it
+     * @throws HttpClientErrorException if the picture is not a supported image, is too large or was replaced, or
+     *                                  with SERVICE_UNAVAILABLE if too many pictures are being decoded
+     * @throws MinioException           if an error occurs
+     * @throws IOException              if an I/O error occurs
+     * @throws NoSuchAlgorithmException if an algorithm is not available
+     * @throws InvalidKeyException      if the key is invalid
+     */
+    public void createVariants(String ownerId, MinioService.StagedUpload upload, String objectName) throws HttpClientErrorException, MinioException, IOException, NoSuchAlgorithmException, InvalidKeyException {
+        acquireDecodePermit();
+        List<byte[]> variants = new ArrayList<>();
+        try {
+            BufferedImage original;
+            try (InputStream stream = minioService.getUpload(ownerId, upload)) {
+                original = decode(stream);
+            }
+            for (int size : PROFILE_PICTURE_SIZES) {
+                variants.add(encodeJpeg(resize(original, size)));
+            }
+        } finally {
+            decodePermits.release();
+        }
+
+        for (int i = 0; i < PROFILE_PICTURE_SIZES.length; i++) {
+            byte[] variant = variants.get(i);
+            minioService.uploadStream(ownerId, Utils.imageVariantName(objectName, PROFILE_PICTURE_SIZES[i]), new ByteArrayInputStream(variant), variant.length, VARIANT_CONTENT_TYPE, true);
+        }
+        logger.info("Created {} picture variants", PROFILE_PICTURE_SIZES.length);
+    }
+
+    /**
+     * Wait for a permit to decode a picture.
+     *
+     * @throws HttpClientErrorException with SERVICE_UNAVAILABLE if no permit is released within IMAGE_DECODE_WAIT_MS
+     */
+    private void acquireDecodePermit() throws HttpClientErrorException {
+        try {
+            if (!decodePermits.tryAcquire(decodeWaitMs, TimeUnit.MILLISECONDS)) {
+                throw new HttpClientErrorException(HttpStatus.SERVICE_UNAVAILABLE, "Too many pictures being processed");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HttpClientErrorException(HttpStatus.SERVICE_UNAVAILABLE, "Interrupted while waiting to process the picture");
+        }
+    }
+
+    /**
+     * Get the names of a picture and of its variants.
+     *
+     * @param objectName Name of the original picture
+     * @return List of object names
+     */
+    public List<String> getObjectNames(String objectName) {
+        List<String> objectNames = new ArrayList<>(List.of(objectName));
+        for (int size : PROFILE_PICTURE_SIZES) {
+            objectNames.add(Utils.imageVariantName(objectName, size));
+        }
+        return objectNames;
+    }
+
+    /**
+     * Decode an image, checking its dimensions before decoding the pixels.
+     * The encoded bytes are cached in memory only, never in a temporary file. Readers can fail on corrupted images
+     * with unchecked exceptions, which are reported as an invalid image like the IIOException.
+     *
+     * @param stream Encoded image
+     * @return Decoded image
+     * @throws HttpClientErrorException if the image format is not supported or the image is too large
+     * @throws IOException              if an I/O error occurs
+     */
+    private BufferedImage decode(InputStream stream) throws HttpClientErrorException, IOException {
+        try (ImageInputStream input = new MemoryCacheImageInputStream(stream)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new HttpClientErrorException(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "Unsupported image format");
+            }
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                if ((long) reader.getWidth(0) * reader.getHeight(0) > maxPixels) {
+                    throw new HttpClientErrorException(HttpStatus.PAYLOAD_TOO_LARGE, "Image larger than " + maxPixels + " pixels");
+                }
+                return reader.read(0);
+            } catch (HttpClientErrorException e) {
+                throw e;
+            } catch (IIOException | RuntimeException e) {
+                throw new HttpClientErrorException(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "Invalid image");
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Crop the center square of an image and resize it.
+     * Large images are halved step by step, a single bilinear step would drop most of the pixels.
+     *
+     * @param image Image to resize
+     * @param size  Side of the resized image, in pixels
+     * @return Resized image
+     */
+    private BufferedImage resize(BufferedImage image, int size) {
+        int side = Math.min(image.getWidth(), image.getHeight());
+        BufferedImage current = image.getSubimage((image.getWidth() - side) / 2, (image.getHeight() - side) / 2, side, side);
+        int currentSize = side;
+        do {
+            currentSize = currentSize / 2 >= size ? currentSize / 2 : size;
+            current = draw(current, currentSize);
+        } while (currentSize != size);
+        return current;
+    }
+
+    /**
+     * Draw an image on an opaque RGB image of another size.
+     * Transparent pixels become white, since JPEG has no alpha channel.
+     *
+     * @param image Image to draw
+     * @param size  Side of the new image, in pixels
+     * @return New image
+     */
+    private BufferedImage draw(BufferedImage image, int size) {
+        BufferedImage resized = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = resized.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(image, 0, 0, size, size, Color.WHITE, null);
+        } finally {
+            graphics.dispose();
+        }
+        return resized;
+    }
+
+    /**
+     * Encode an image as JPEG.
+     *
+     * @param image Image to encode
+     * @return Encoded image
+     * @throws IOException if an I/O error occurs
+     */
+    private byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(JPEG_QUALITY);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (MemoryCacheImageOutputStream imageOutput = new MemoryCacheImageOutputStream(output)) {
+            writer.setOutput(imageOutput);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return output.toByteArray();
+    }
+}
@@ -3,21 +3,31 @@ package fr.polytech.service;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.polytech.Util.TtlCache;
+import fr.polytech.Util.Utils;
 import fr.polytech.model.ExperienceDTO;
+import fr.polytech.model.aux.AvailabilityEventDTO;
 import fr.polytech.model.aux.ExperienceDTOWithUserId;
-import org.keycloak.admin.client.Keycloak;
+import fr.polytech.model.aux.OfferDTO;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpClientErrorException;
 
-import java.util.UUID;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
-import static fr.polytech.constant.Env.*;
+import static fr.polytech.constant.Env.KAFKA_PROCESSED_RECORD_CACHE_SIZE;
+import static fr.polytech.constant.Env.KAFKA_PROCESSED_RECORD_CACHE_TTL_MS;
 
 @Service
 public class KafkaService {
@@ -28,50 +38,63 @@ public class KafkaService {
     private static final Logger logger = LoggerFactory.getLogger(KafkaService.class);
 
     private final ExperienceService experienceService;
+    private final UserService userService;
+    private final AvailabilityIndexService availabilityIndexService;
+    private final MatchCacheService matchCacheService;
+    private final DetailedUserCacheService detailedUserCacheService;
+    private final AdminTokenService adminTokenService;
     private final ObjectMapper objectMapper;
 
     private final KafkaTemplate<String, String> kafkaTemplate;
 
-    @Autowired
-    public KafkaService(ExperienceService experienceService, ObjectMapper objectMapper, KafkaTemplate<String, String> kafkaTemplate) {
-        this.experienceService = experienceService;
-        this.objectMapper = objectMapper;
-        this.kafkaTemplate = kafkaTemplate;
+    /**
+     * Experience created for a record of the experience topic
+     */
+    private static class ProcessedRecord {
+        private final UUID experienceId;
+        // True once the experience was added to its candidate and the reply was sent
+        private volatile boolean replied;
+
+        private ProcessedRecord(UUID experienceId) {
+            this.experienceId = experienceId;
+        }
     }
 
     /**
-     * Initialize Keycloak instance
+     * Experiences created by the batch listener, by record, so that records delivered again are not created twice
      */
-    private final Keycloak keycloak = Keycloak.getInstance(
-            System.getenv(KEYCLOAK_URI),
-            System.getenv(KEYCLOAK_REALM),
-            System.getenv(ADMIN_USERNAME),
-            System.getenv(ADMIN_PASSWORD),
-            System.getenv(CLIENT_ID)
+    private final TtlCache<String, ProcessedRecord> processedRecords = new TtlCache<>(
+            Utils.intFromEnv(KAFKA_PROCESSED_RECORD_CACHE_SIZE, 10000),
+            Utils.intFromEnv(KAFKA_PROCESSED_RECORD_CACHE_TTL_MS, 3600000)
     );
 
+    @Autowired
+    public KafkaService(ExperienceService experienceService, UserService userService, AvailabilityIndexService availabilityIndexService, MatchCacheService matchCacheService, DetailedUserCacheService detailedUserCacheService, AdminTokenService adminTokenService, ObjectMapper objectMapper, KafkaTemplate<String, String> kafkaTemplate) {
+        this.experienceService = experienceService;
+        this.userService = userService;
+        this.availabilityIndexService = availabilityIndexService;
+        this.matchCacheService = matchCacheService;
+        this.detailedUserCacheService = detailedUserCacheService;
+        this.adminTokenService = adminTokenService;
+        this.objectMapper = objectMapper;
+        this.kafkaTemplate = kafkaTemplate;
+    }
+
     /**
-     * Listen to the experience-topic Kafka topic
+     * Listen to the experience-topic Kafka topic, one record at a time.
+     * Disabled when KAFKA_EXPERIENCE_BATCH_ENABLED is true, the batch listener being used instead.
+     *
      * @param message Message received
      */
-    @KafkaListener(topics = "experience-topic", groupId = "user")
+    @KafkaListener(id = "experience-listener", topics = "experience-topic", groupId = "user", autoStartup = "#{!${KAFKA_EXPERIENCE_BATCH_ENABLED:false}}")
     public void listenExperience(String message) {
         try {
             logger.info("Received message: {}", message);
             ExperienceDTOWithUserId experienceDTOWithUserId = messageToExperience(message);
 
-            ExperienceDTO experienceDTO = new ExperienceDTO();
-
-            experienceDTO.setStartDate(experienceDTOWithUserId.getStartDate());
-            experienceDTO.setCompanyId(experienceDTOWithUserId.getCompanyId());
-            experienceDTO.setEndDate(experienceDTOWithUserId.getEndDate());
-            experienceDTO.setJobTitle(experienceDTOWithUserId.getJobTitle());
-            experienceDTO.setJobCategoryId(experienceDTOWithUserId.getJobCategoryId());
-
-            // get access token for user of id experienceDTOWithUserId.getUserId().toString()
-            String token = keycloak.tokenManager().getAccessTokenString();
+            ExperienceDTO experienceDTO = toExperience(experienceDTOWithUserId);
 
-            logger.info("user token: " + token);
+            String token = adminTokenService.getAccessToken();
 
             UUID experienceUuid = experienceService.addExperienceForUserManager(experienceDTOWithUserId.getUserId().toString(), experienceDTO, token);
 
@@ -83,6 +106,201 @@ public class KafkaService {
         }
     }
 
+    /**
+     * Listen to the experience-topic Kafka topic by batch, enabled with KAFKA_EXPERIENCE_BATCH_ENABLED=true.
+     * The records are grouped by user: the experiences are created concurrently, each user is updated once, the
+     * replies are produced in bulk and the offsets are committed once the replies are sent.
+     * If a record cannot be processed, only the offsets of the records before it are committed and the batch is
+     * delivered again from it. The experiences created by a delivery are remembered by record, so that a new delivery
+     * does not create them again nor process the records that were fully processed.
+     *
+     * @param records        Records received
+     * @param acknowledgment Acknowledgment of the batch
+     * @throws BatchListenerFailedException With the index of the first record that could not be processed
+     */
+    @KafkaListener(id = "experience-batch-listener", topics = "experience-topic", groupId = "user", containerFactory = "batchKafkaListenerContainerFactory", autoStartup = "${KAFKA_EXPERIENCE_BATCH_ENABLED:false}")
+    public void listenExperienceBatch(List<ConsumerRecord<String, String>> records, Acknowledgment acknowledgment) throws BatchListenerFailedException {
+        logger.info("Received {} experience messages", records.size());
+
+        // Group the records to process by user, keeping their order
+        Map<String, List<Integer>> indexesByUser = new LinkedHashMap<>();
+        Map<Integer, ExperienceDTOWithUserId> received = new HashMap<>();
+        Map<Integer, ExperienceDTO> experiences = new HashMap<>();
+        for (int i = 0; i < records.size(); i++) {
+            ProcessedRecord processed = processedRecords.get(recordKey(records.get(i)));
+            if (processed != null && processed.replied) {
+                // Processed by a previous delivery that failed on an earlier record
+                continue;
+            }
+            try {
+                ExperienceDTOWithUserId experienceDTOWithUserId = messageToExperience(records.get(i).value());
+                if (experienceDTOWithUserId.getUserId() == null) {
+                    logger.warn("Ignoring experience message without user: {}", records.get(i).value());
+                    continue;
+                }
+                ExperienceDTO experienceDTO = toExperience(experienceDTOWithUserId);
+                if (processed != null) {
+                    experienceDTO.setId(processed.experienceId);
+                }
+                received.put(i, experienceDTOWithUserId);
+                experiences.put(i, experienceDTO);
+                indexesByUser.computeIfAbsent(experienceDTOWithUserId.getUserId().toString(), key -> new ArrayList<>()).add(i);
+            } catch (JsonProcessingException e) {
+                // Delivering the record again would not help
+                logger.error("Error while parsing message", e);
+            }
+        }
+
+        if (!indexesByUser.isEmpty()) {
+            int firstIndex = indexesByUser.values().stream().mapToInt(indexes -> indexes.get(0)).min().orElseThrow();
+            Map<String, List<ExperienceDTO>> experiencesByUser = new LinkedHashMap<>();
+            indexesByUser.forEach((userId, indexes) -> experiencesByUser.put(userId, indexes.stream().map(experiences::get).toList()));
+
+            Map<String, List<UUID>> addedIds;
+            try {
+                addedIds = experienceService.addExperiencesForUsersManager(experiencesByUser, adminTokenService.getAccessToken());
+            } catch (HttpClientErrorException e) {
+                throw new BatchListenerFailedException("Error while adding experiences: " + e.getMessage(), e, firstIndex);
+            }
+
+            // Reply for every experience added to its candidate
+            int failedIndex = records.size();
+            Map<Integer, CompletableFuture<SendResult<String, String>>> replies = new TreeMap<>();
+            Map<Integer, ProcessedRecord> processedByIndex = new HashMap<>();
+            for (Map.Entry<String, List<Integer>> entry : indexesByUser.entrySet()) {
+                List<UUID> ids = addedIds.get(entry.getKey());
+                for (int j = 0; j < entry.getValue().size(); j++) {
+                    int index = entry.getValue().get(j);
+                    UUID experienceId = experiences.get(index).getId();
+                    if (experienceId != null) {
+                        // Created, even if not added to its candidate: a new delivery must not create it again
+                        ProcessedRecord processed = new ProcessedRecord(experienceId);
+                        processedRecords.put(recordKey(records.get(index)), processed);
+                        processedByIndex.put(index, processed);
+                    }
+                    if (ids.get(j) == null) {
+                        failedIndex = Math.min(failedIndex, index);
+                        continue;
+                    }
+                    try {
+                        received.get(index).setId(ids.get(j));
+                        replies.put(index, sendExperience(received.get(index)));
+                    } catch (RuntimeException e) {
+                        logger.error("Error while sending experience reply: " + e.getMessage());
+                        failedIndex = Math.min(failedIndex, index);
+                    }
+                }
+            }
+            kafkaTemplate.flush();
+
+            int sent = 0;
+            for (Map.Entry<Integer, CompletableFuture<SendResult<String, String>>> reply : replies.entrySet()) {
+                try {
+                    reply.getValue().join();
+                    processedByIndex.get(reply.getKey()).replied = true;
+                    sent++;
+                } catch (CompletionException e) {
+                    logger.error("Error while sending experience reply: " + e.getCause().getMessage());
+                    failedIndex = Math.min(failedIndex, reply.getKey());
+                }
+            }
+            logger.info("Added {} experiences to {} users", sent, indexesByUser.size());
+
+            if (failedIndex < records.size()) {
+                throw new BatchListenerFailedException("Experience message could not be processed", failedIndex);
+            }
+        }
+
+        acknowledgment.acknowledge();
+    }
+
+    /**
+     * Listen to the availability-topic Kafka topic to keep the availability index up to date.
+     * Every instance uses its own consumer group because every instance holds its own index.
+     *
+     * @param message Message received
+     */
+    @KafkaListener(topics = "availability-topic", groupId = "user-availability-#{T(java.util.UUID).randomUUID()}")
+    public void listenAvailability(String message) {
+        try {
+            logger.info("Received availability message: {}", message);
+            AvailabilityEventDTO event = objectMapper.readValue(message, AvailabilityEventDTO.class);
+            if (event.getUserId() == null || event.getAvailability() == null) {
+                logger.warn("Ignoring availability message without user or availability");
+                return;
+            }
+
+            if ("deleted".equalsIgnoreCase(event.getAction())) {
+                availabilityIndexService.removeAvailability(event.getUserId(), event.getAvailability().getId());
+            } else {
+                availabilityIndexService.addAvailability(event.getUserId(), event.getAvailability());
+            }
+            // Every instance receives the event, no need to broadcast the invalidation
+            userService.evictUser(event.getUserId().toString());
+            detailedUserCacheService.evict(event.getUserId().toString());
+        } catch (JsonProcessingException e) {
+            logger.error("Error while parsing availability message", e);
+        }
+    }
+
+    /**
+     * Listen to the offer-topic Kafka topic to invalidate the cached matches of updated or deleted offers.
+     * Every instance uses its own consumer group because every instance holds its own cache.
+     *
+     * @param message Message received
+     */
+    @KafkaListener(topics = "offer-topic", groupId = "user-offer-#{T(java.util.UUID).randomUUID()}")
+    public void listenOffer(String message) {
+        try {
+            logger.info("Received offer message: {}", message);
+            OfferDTO offer = objectMapper.readValue(message, OfferDTO.class);
+            if (offer.getId() != null) {
+                matchCacheService.invalidateOffer(offer.getId());
+            }
+        } catch (JsonProcessingException e) {
+            logger.error("Error while parsing offer message", e);
+        }
+    }
+
+    /**
+     * Listen to the user-invalidation-topic Kafka topic to evict the users, detailed users and matches of the users
+     * updated on other instances.
+     * Every instance uses its own consumer group because every instance holds its own cache.
+     *
+     * @param message Id of the updated user
+     */
+    @KafkaListener(topics = DetailedUserCacheService.INVALIDATION_TOPIC, groupId = "user-invalidation-#{T(java.util.UUID).randomUUID()}")
+    public void listenUserInvalidation(String message) {
+        logger.info("Received user invalidation message: {}", message);
+        UUID userId;
+        try {
+            userId = UUID.fromString(message);
+        } catch (IllegalArgumentException e) {
+            logger.error("Ignoring user invalidation message that is not a user id: {}", message);
+            return;
+        }
+        userService.evictUser(message);
+        detailedUserCacheService.evict(message);
+        matchCacheService.onUserChanged(userId);
+    }
+
+    /**
+     * Build the experience to create from a received experience
+     *
+     * @param experienceDTOWithUserId Received experience
+     * @return ExperienceDTO
+     */
+    private ExperienceDTO toExperience(ExperienceDTOWithUserId experienceDTOWithUserId) {
+        ExperienceDTO experienceDTO = new ExperienceDTO();
+
+        experienceDTO.setStartDate(experienceDTOWithUserId.getStartDate());
+        experienceDTO.setCompanyId(experienceDTOWithUserId.getCompanyId());
+        experienceDTO.setEndDate(experienceDTOWithUserId.getEndDate());
+        experienceDTO.setJobTitle(experienceDTOWithUserId.getJobTitle());
+        experienceDTO.setJobCategoryId(experienceDTOWithUserId.getJobCategoryId());
+        return experienceDTO;
+    }
+
     /**
      * Parse a message to an ExperienceDTOWithUserId
      * @param message Message to parse
@@ -96,17 +314,28 @@ public class KafkaService {
         return experienceDTOWithUserId;
     }
 
+    /**
+     * Get the key of a record in the processed records.
+     *
+     * @param record Record
+     * @return Topic, partition and offset of the record
+     */
+    private static String recordKey(ConsumerRecord<String, String> record) {
+        return record.topic() + "-" + record.partition() + "@" + record.offset();
+    }
+
     /**
      * Send a message to the Kafka topic
      *
      * @param experience ExperienceDTO to send
+     * @return Future of the send result
      * @throws HttpClientErrorException If the notification cannot be serialized
      */
-    public void sendExperience(ExperienceDTOWithUserId experience) throws HttpClientErrorException {
+    public CompletableFuture<SendResult<String, String>> sendExperience(ExperienceDTOWithUserId experience) throws HttpClientErrorException {
         try {
             String message = objectMapper.writeValueAsString(experience);
             logger.info("Producing message: {}", message);
-            kafkaTemplate.send("experience-creation-topic", message);
+            return kafkaTemplate.send("experience-creation-topic", message);
         } catch (JsonProcessingException e) {
             throw new HttpClientErrorException(HttpStatus.INTERNAL_SERVER_ERROR, "Error while serializing notification");
         }
@@ -0,0 +1,152 @@
+package fr.polytech.service;
+
+import fr.polytech.Util.TtlCache;
+import fr.polytech.Util.Utils;
+import fr.polytech.model.AvailabilityDTO;
+import fr.polytech.model.aux.OfferDetailDTO;
+import fr.polytech.model.response.user.CandidateUserResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static fr.polytech.constant.Env.MATCH_CACHE_SIZE;
+import static fr.polytech.constant.Env.MATCH_CACHE_TTL_MS;
+
+/**
+ * Cache of the candidates matching an offer, before any plan filtering.
+ * An entry is invalidated when the offer changes, when an availability change can modify its candidates, or when one
+ * of its candidates is updated or deleted, since the cached candidates are returned as they were when matched.
+ */
+@Service
+public class MatchCacheService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MatchCacheService.class);
+
+    /**
+     * Matching candidates of an offer, with the offer data used to compute them
+     */
+    private static class MatchResult {
+        private final Date startDate;
+        private final Date endDate;
+        private final String address;
+        private final List<CandidateUserResponse> candidates;
+        private final Set<UUID> candidateIds = new HashSet<>();
+
+        private MatchResult(OfferDetailDTO offer, List<CandidateUserResponse> candidates) {
+            this.startDate = offer.getStartDate();
+            this.endDate = offer.getEndDate();
+            this.address = offer.getAddress().toString().toLowerCase();
+            this.candidates = List.copyOf(candidates);
+            candidates.forEach(candidate -> candidateIds.add(candidate.getId()));
+        }
+    }
+
+    private final TtlCache<UUID, MatchResult> cache = new TtlCache<>(
+            Utils.intFromEnv(MATCH_CACHE_SIZE, 1000),
+            Utils.intFromEnv(MATCH_CACHE_TTL_MS, 300000)
+    );
+
+    /**
+     * Incremented on every invalidation, so that results computed before an invalidation are not cached
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Get the current generation, to read before computing a result to cache.
+     *
+     * @return Current generation
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Get the cached matching candidates of an offer.
+     *
+     * @param offerId Offer id
+     * @return List of matching candidates, or null if they are not cached
+     */
+    public List<CandidateUserResponse> getMatchingUsers(UUID offerId) {
+        MatchResult result = cache.get(offerId);
+        return result == null ? null : result.candidates;
+    }
+
+    /**
+     * Cache the matching candidates of an offer, unless an invalidation happened since the given generation.
+     *
+     * @param offerId       Offer id
+     * @param offer         Offer the candidates were matched with
+     * @param matchingUsers List of matching candidates
+     * @param generation    Generation read before computing the candidates
+     */
+    public void putMatchingUsers(UUID offerId, OfferDetailDTO offer, List<CandidateUserResponse> matchingUsers, long generation) {
+        synchronized (this.generation) {
+            if (this.generation.get() == generation) {
+                cache.put(offerId, new MatchResult(offer, matchingUsers));
+            }
+        }
+    }
+
+    /**
+     * Invalidate the cached candidates of an offer.
+     *
+     * @param offerId Offer id
+     */
+    public void invalidateOffer(UUID offerId) {
+        synchronized (generation) {
+            generation.incrementAndGet();
+            cache.invalidate(offerId);
+        }
+        logger.info("Match cache invalidated for offer {}", offerId);
+    }
+
+    /**
+     * Invalidate the cached offers whose candidates can change because the availabilities of a candidate changed:
+     * offers where the candidate was matching, and offers matched by one of its new availabilities.
+     *
+     * @param candidateId    Candidate id
+     * @param availabilities New availabilities of the candidate
+     */
+    public void onAvailabilitiesChanged(UUID candidateId, Collection<AvailabilityDTO> availabilities) {
+        synchronized (generation) {
+            generation.incrementAndGet();
+            cache.invalidateIf((offerId, result) -> result.candidateIds.contains(candidateId)
+                    || availabilities.stream().anyMatch(availability -> matches(availability, result)));
+        }
+    }
+
+    /**
+     * Invalidate the cached offers where a candidate was matching, because its profile was updated or deleted.
+     *
+     * @param candidateId Candidate id
+     */
+    public void onUserChanged(UUID candidateId) {
+        synchronized (generation) {
+            generation.incrementAndGet();
+            cache.invalidateIf((offerId, result) -> result.candidateIds.contains(candidateId));
+        }
+    }
+
+    /**
+     * Check if an availability matches the offer of a cached result.
+     *
+     * @param availability Availability
+     * @param result       Cached result
+     * @return True if the availability covers the offer dates and one of its places is in the offer address
+     */
+    private boolean matches(AvailabilityDTO availability, MatchResult result) {
+        if (availability.getStartDate() == null || availability.getEndDate() == null || result.startDate == null || result.endDate == null) {
+            return false;
+        }
+        if (availability.getStartDate().after(result.startDate) || availability.getEndDate().before(result.endDate)) {
+            return false;
+        }
+        if (availability.getPlaceList() == null) {
+            return false;
+        }
+        return availability.getPlaceList().stream().anyMatch(place -> place != null && result.address.contains(place.toLowerCase()));
+    }
+}
@@ -2,6 +2,7 @@ package fr.polytech.service;
 
 import com.auth0.jwt.JWT;
 import com.auth0.jwt.interfaces.DecodedJWT;
+import fr.polytech.Util.Utils;
 import fr.polytech.model.AvailabilityDTO;
 import fr.polytech.model.aux.OfferDetailDTO;
 import fr.polytech.model.aux.PlanDTO;
@@ -20,6 +21,7 @@ import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 
 import static fr.polytech.constant.Env.*;
 import static fr.polytech.constant.Plans.*;
@@ -40,7 +42,12 @@ public class MatchingService {
     @Autowired
     private UserService userService;
 
-    private static final String availabilityApiUri = System.getenv(AVAILABILITY_API_URI);
+    @Autowired
+    private AvailabilityIndexService availabilityIndexService;
+
+    @Autowired
+    private MatchCacheService matchCacheService;
+
     private static final String offerApiUri = System.getenv(OFFER_API_URI);
     private static final String planApiUri = System.getenv(PLAN_API_URI);
 
@@ -55,35 +62,25 @@ public class MatchingService {
     public List<PlanUser> matchUsersWithOffer(UUID offerId, String token) throws HttpClientErrorException {
         logger.info("Getting all users matching with offer with ID " + offerId);
 
-        // Get all users
-        List<BaseUserResponse> users = userService.getUsers();
-
-        // Get all availabilities of all users
-        Map<CandidateUserResponse, List<AvailabilityDTO>> usersAvailabilities = new HashMap<>();
-
-        users.stream().filter(user -> user.getRole().equals(CANDIDATE)).forEach(user -> {
-            List<AvailabilityDTO> userAvailabilities = getAvailabilities((CandidateUserResponse) user, token);
-            usersAvailabilities.put((CandidateUserResponse) user, userAvailabilities);
-        });
-
-        if (usersAvailabilities.isEmpty()) {
-            return Collections.emptyList();
+        // Matching candidates only depend on the offer, so they are cached before any plan filtering
+        List<CandidateUserResponse> matchingUsers = matchCacheService.getMatchingUsers(offerId);
+
+        if (matchingUsers == null) {
+            // Get offer and associated data
+            OfferDetailDTO offer = makeApiCall(offerApiUri + "/detailed/" + offerId, HttpMethod.GET, OfferDetailDTO.class, token);
+
+            // Match users with offer data, reading the users page by page
+            // A user is considered as matching if he has at least one availability that matches with the offer :
+            // - availability start date is before or equals to offer start date
+            // - availability end date is after or equals to offer end date
+            // - offer address contains a String from availability placeList
+            // If a user is matching, he is added to the list of matching users
+            OfferMatch match = new OfferMatch(offer.getStartDate(), offer.getEndDate(), offer.getAddress().toString());
+            userService.forEachUserPage(users -> match.addPage(users, token));
+            matchingUsers = match.matchingUsers;
+            matchCacheService.putMatchingUsers(offerId, offer, matchingUsers, match.cacheGeneration);
         }
 
-        // Get offer and associated data
-        OfferDetailDTO offer = makeApiCall(offerApiUri + "/detailed/" + offerId, HttpMethod.GET, OfferDetailDTO.class, token);
-        Date offerStartDate = offer.getStartDate();
-        Date offerEndDate = offer.getEndDate();
-        String address = offer.getAddress().toString();
-
-        // Match users with offer data
-        // A user is considered as matching if he has at least one availability that matches with the offer :
-        // - availability start date is before or equals to offer start date
-        // - availability end date is after or equals to offer end date
-        // - offer address contains a String from availability placeList
-        // If a user is matching, he is added to the list of matching users
-        List<CandidateUserResponse> matchingUsers = getMatchingUsers(usersAvailabilities, offerStartDate, offerEndDate, address);
-
         // Get recruiter plan from token (get by id => get plan id => get plan)
         DecodedJWT decodedJWT = JWT.decode(extractToken(token));
         String subField = decodedJWT.getSubject();
@@ -119,31 +116,29 @@ public class MatchingService {
      * @throws HttpClientErrorException if an error occurs while calling the API
      */
     private List<PlanUser> getPremiumUsers(List<CandidateUserResponse> matchingUsers, PlanDTO recruiterPlan) throws HttpClientErrorException {
-        List<PlanUser> premiumUsers = new ArrayList<>();
+        List<CandidateUserResponse> selectedUsers;
 
-        for (CandidateUserResponse user : matchingUsers) {
+        if (recruiterPlan.getName().equalsIgnoreCase(SILVER)) {
+            // Get max 10 random users
+            selectedUsers = selectRandomUsers(matchingUsers, SILVER_MATCH_LIMIT);
+        } else if (recruiterPlan.getName().equalsIgnoreCase(GOLD) || recruiterPlan.getName().equalsIgnoreCase(PLATINUM)) {
+            selectedUsers = matchingUsers;
+        } else {
+            throw new HttpClientErrorException(HttpStatus.NOT_FOUND, "Plan not found");
+        }
+
+        List<PlanUser> premiumUsers = new ArrayList<>(selectedUsers.size());
+        for (CandidateUserResponse user : selectedUsers) {
             SilverGoldPlatinumUser premiumUser = new SilverGoldPlatinumUser();
             premiumUser.setId(user.getId());
             premiumUser.setFirstName(user.getFirstName());
             premiumUser.setLastName(user.getLastName());
-            premiumUser.setProfilePictureUrl(user.getProfilePictureUrl());
+            premiumUser.setProfilePictureUrl(Utils.profilePictureThumbnailUrl(user.getProfilePictureUrl()));
             premiumUser.setPhone(user.getPhone());
             premiumUser.setEmail(user.getEmail());
             premiumUsers.add(premiumUser);
         }
-
-        if (recruiterPlan.getName().equalsIgnoreCase(SILVER)) {
-            // Get max 10 random users
-            Collections.shuffle(premiumUsers);
-            if (premiumUsers.size() > 10) {
-                premiumUsers = premiumUsers.subList(0, 10);
-            }
-            return premiumUsers;
-        } else if (recruiterPlan.getName().equalsIgnoreCase(GOLD) || recruiterPlan.getName().equalsIgnoreCase(PLATINUM)) {
-            return premiumUsers;
-        } else {
-            throw new HttpClientErrorException(HttpStatus.NOT_FOUND, "Plan not found");
-        }
+        return premiumUsers;
     }
 
     /**
@@ -154,24 +149,48 @@ public class MatchingService {
      * @return List of free users
      */
     private List<PlanUser> getFreeUsers(List<CandidateUserResponse> matchingUsers) {
-        List<PlanUser> freeUsers = new ArrayList<>();
+        // Get max 5 random users
+        List<CandidateUserResponse> selectedUsers = selectRandomUsers(matchingUsers, FREE_MATCH_LIMIT);
 
-        for (CandidateUserResponse user : matchingUsers) {
+        List<PlanUser> freeUsers = new ArrayList<>(selectedUsers.size());
+        for (CandidateUserResponse user : selectedUsers) {
             FreeUser freeUser = new FreeUser();
             freeUser.setId(user.getId());
             freeUser.setFirstName(user.getFirstName());
             freeUser.setLastName(user.getLastName());
-            freeUser.setProfilePictureUrl(user.getProfilePictureUrl());
+            freeUser.setProfilePictureUrl(Utils.profilePictureThumbnailUrl(user.getProfilePictureUrl()));
             freeUsers.add(freeUser);
         }
 
-        // Get max 5 random users
-        Collections.shuffle(freeUsers);
-        if (freeUsers.size() > 5) {
-            freeUsers = freeUsers.subList(0, 5);
+        return freeUsers;
+    }
+
+    /**
+     * Select up to limit random users with reservoir sampling, in O(limit) memory.
+     *
+     * @param users List of users to select from
+     * @param limit Maximum number of users to select
+     * @return List of randomly selected users, in random order
+     */
+    private List<CandidateUserResponse> selectRandomUsers(List<CandidateUserResponse> users, int limit) {
+        Random random = ThreadLocalRandom.current();
+        List<CandidateUserResponse> reservoir = new ArrayList<>(Math.min(limit, users.size()));
+
+        int seen = 0;
+        for (CandidateUserResponse user : users) {
+            seen++;
+            if (reservoir.size() < limit) {
+                reservoir.add(user);
+            } else {
+                int position = random.nextInt(seen);
+                if (position < limit) {
+                    reservoir.set(position, user);
+                }
+            }
         }
 
-        return freeUsers;
+        Collections.shuffle(reservoir, random);
+        return reservoir;
     }
 
     /**
@@ -216,37 +235,45 @@ public class MatchingService {
     /**
      * Get matching users
      *
-     * @param usersAvailabilities Map of users and their availabilities
-     * @param offerStartDate      Start date of the offer
-     * @param offerEndDate        End date of the offer
-     * @param address             Address of the offer
+     * @param candidates     List of candidates
+     * @param offerStartDate Start date of the offer
+     * @param offerEndDate   End date of the offer
+     * @param address        Address of the offer
      * @return List of users matching with the offer
      */
-    private List<CandidateUserResponse> getMatchingUsers(Map<CandidateUserResponse, List<AvailabilityDTO>> usersAvailabilities, Date offerStartDate, Date offerEndDate, String address) {
+    List<CandidateUserResponse> getMatchingUsers(List<CandidateUserResponse> candidates, Date offerStartDate, Date offerEndDate, String address) {
         logger.info("Getting matching users");
-        List<CandidateUserResponse> matchingUsers = new ArrayList<>();
 
-        for (Map.Entry<CandidateUserResponse, List<AvailabilityDTO>> userAvailabilities : usersAvailabilities.entrySet()) {
-            for (AvailabilityDTO availability : userAvailabilities.getValue()) {
+        // Availabilities starting before or at the offer start date and ending after or at the offer end date
+        Map<UUID, List<AvailabilityDTO>> coveringAvailabilities = availabilityIndexService.findCovering(offerStartDate, offerEndDate);
 
-                // Check if availability start date is before or equals to offer start date
-                boolean startDateMatches = availability.getStartDate().before(offerStartDate) || availability.getStartDate().equals(offerStartDate);
+        // Availabilities with a place contained in the offer address
+        Set<UUID> placeMatchingAvailabilities = availabilityIndexService.findMatchingPlaces(address);
 
-                // Check if availability end date is after or equals to offer end date
-                boolean endDateMatches = availability.getEndDate().after(offerEndDate) || availability.getEndDate().equals(offerEndDate);
+        return getMatchingUsers(candidates, coveringAvailabilities, placeMatchingAvailabilities);
+    }
 
-                // Check if offer address is in the availability place list
-                boolean placeMatches = false;
-                for (String place : availability.getPlaceList()) {
-                    if (address.toLowerCase().contains(place.toLowerCase())) {
-                        placeMatches = true;
-                        break;
-                    }
-                }
+    /**
+     * Get matching users from the availabilities matching with an offer
+     *
+     * @param candidates                  List of candidates
+     * @param coveringAvailabilities      Availabilities covering the offer period, by candidate id
+     * @param placeMatchingAvailabilities Ids of the availabilities with a place contained in the offer address
+     * @return List of users matching with the offer
+     */
+    private List<CandidateUserResponse> getMatchingUsers(List<CandidateUserResponse> candidates, Map<UUID, List<AvailabilityDTO>> coveringAvailabilities, Set<UUID> placeMatchingAvailabilities) {
+        List<CandidateUserResponse> matchingUsers = new ArrayList<>();
+        for (CandidateUserResponse candidate : candidates) {
+            List<AvailabilityDTO> availabilities = coveringAvailabilities.get(candidate.getId());
+            if (availabilities == null) {
+                continue;
+            }
 
-                // Add user to matching list if all criteria are met
-                if (startDateMatches && endDateMatches && placeMatches) {
-                    matchingUsers.add(userAvailabilities.getKey());
+            for (AvailabilityDTO availability : availabilities) {
+                // Add user to matching list if all criteria are met, only once even if several availabilities match
+                if (placeMatchingAvailabilities.contains(availability.getId())) {
+                    matchingUsers.add(candidate);
+                    break;
                 }
             }
         }
@@ -255,28 +282,6 @@ public class MatchingService {
     }
 
 
-    /**
-     * Get availabilities of a user
-     *
-     * @param user  User
-     * @param token String - Access token from the user who adds the review
-     * @return List of availabilities
-     * @throws HttpClientErrorException if an error occurs while calling the API
-     */
-    private List<AvailabilityDTO> getAvailabilities(CandidateUserResponse user, String token) throws HttpClientErrorException {
-        if (user.getAvailabilityIdList() == null || user.getAvailabilityIdList().isEmpty()) {
-            return Collections.emptyList();
-        }
-
-        List<AvailabilityDTO> availabilities = new ArrayList<>();
-        for (UUID availabilityId : user.getAvailabilityIdList()) {
-            String uri = availabilityApiUri + "/" + availabilityId;
-            AvailabilityDTO availability = makeApiCall(uri, HttpMethod.GET, AvailabilityDTO.class, token);
-            availabilities.add(availability);
-        }
-        return availabilities;
-    }
-
     /**
      * Extract token from bearer token.
      *
@@ -290,4 +295,66 @@ public class MatchingService {
         }
         return token.replace("Bearer ", "");
     }
+
+    /**
+     * Matching of the candidates with an offer, fed with one page of users at a time.
+     * The availability index is queried once, and again only when a page indexed new availabilities.
+     */
+    private class OfferMatch {
+        private final Date offerStartDate;
+        private final Date offerEndDate;
+        private final String address;
+        private final List<CandidateUserResponse> matchingUsers = new ArrayList<>();
+
+        /**
+         * Generation of the match cache when the index was first queried, the result is only cached if it is unchanged
+         */
+        private long cacheGeneration = matchCacheService.getGeneration();
+
+        private long indexGeneration;
+        private Map<UUID, List<AvailabilityDTO>> coveringAvailabilities;
+        private Set<UUID> placeMatchingAvailabilities;
+
+        /**
+         * Constructor.
+         *
+         * @param offerStartDate Start date of the offer
+         * @param offerEndDate   End date of the offer
+         * @param address        Address of the offer
+         */
+        private OfferMatch(Date offerStartDate, Date offerEndDate, String address) {
+            this.offerStartDate = offerStartDate;
+            this.offerEndDate = offerEndDate;
+            this.address = address;
+        }
+
+        /**
+         * Match the candidates of a page of users, making sure their availabilities are in the availability index.
+         *
+         * @param users Page of users
+         * @param token String - Access token used if the availability API has to be called
+         * @throws HttpClientErrorException if an error occurs while calling the API
+         */
+        private void addPage(List<BaseUserResponse> users, String token) throws HttpClientErrorException {
+            List<CandidateUserResponse> candidates = users.stream()
+                    .filter(user -> user.getRole().equals(CANDIDATE))
+                    .map(user -> (CandidateUserResponse) user)
+                    .toList();
+            if (candidates.isEmpty()) {
+                return;
+            }
+            availabilityIndexService.ensureIndexed(candidates, token);
+
+            long generation = matchCacheService.getGeneration();
+            if (coveringAvailabilities == null || generation != indexGeneration) {
+                if (coveringAvailabilities == null) {
+                    cacheGeneration = generation;
+                }
+                indexGeneration = generation;
+                coveringAvailabilities = availabilityIndexService.findCovering(offerStartDate, offerEndDate);
+                placeMatchingAvailabilities = availabilityIndexService.findMatchingPlaces(address);
+            }
+            matchingUsers.addAll(getMatchingUsers(candidates, coveringAvailabilities, placeMatchingAvailabilities));
+        }
+    }
 }
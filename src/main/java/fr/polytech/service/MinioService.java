@@ -1,27 +1,69 @@
 package fr.polytech.service;
 
+import fr.polytech.Util.SizeLimitedInputStream;
+import fr.polytech.Util.TtlCache;
+import fr.polytech.Util.Utils;
+import fr.polytech.model.response.PresignedUrlDTO;
 import io.minio.*;
+import io.minio.errors.ErrorResponseException;
 import io.minio.errors.MinioException;
+import io.minio.http.Method;
+import io.minio.messages.AbortIncompleteMultipartUpload;
+import io.minio.messages.Bucket;
+import io.minio.messages.DeleteError;
+import io.minio.messages.DeleteObject;
+import io.minio.messages.Expiration;
+import io.minio.messages.LifecycleConfiguration;
+import io.minio.messages.LifecycleRule;
+import io.minio.messages.RuleFilter;
+import io.minio.messages.Status;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpClientErrorException;
-import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.security.DigestInputStream;
 import java.security.InvalidKeyException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.time.ZonedDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static fr.polytech.constant.Env.*;
 
 /**
  * Service to interact with Minio.
+ * Files belong to an owner (a user id). By default each owner has its own bucket and the object is stored under its
+ * name. When MINIO_SHARED_BUCKET is set, all the public files are stored in that bucket and the private files in
+ * the "-private" bucket next to it, under the "ownerId/objectName" key.
+ * Uploads are staged in a private staging bucket under the "ownerId/uploadName" key, and only copied to their final
+ * bucket once they are checked. Staged uploads that are never completed expire after MINIO_STAGING_EXPIRY_DAYS.
  */
 @Service
 public class MinioService {
 
+    /**
+     * An upload checked in the staging bucket.
+     *
+     * @param name   Name of the upload
+     * @param etag   ETag of the checked content, reads and copies fail if the upload is replaced meanwhile
+     * @param sha256 Hexadecimal SHA-256 hash of the checked content
+     */
+    public record StagedUpload(String name, String etag, String sha256) {
+    }
+
     private final Logger logger = LoggerFactory.getLogger(MinioService.class);
 
+    private static final String CHECKSUM_MODE_HEADER = "x-amz-checksum-mode";
+
+    private static final String CHECKSUM_SHA256_HEADER = "x-amz-checksum-sha256";
+
     // Initialize minioClient with MinIO server.
     private final MinioClient minioClient = MinioClient.builder()
             .endpoint(System.getenv("MINIO_LOCAL_URI"))
@@ -29,6 +71,211 @@ public class MinioService {
             .region(System.getenv("MINIO_REGION"))
             .build();
 
+    // Client used to sign the URLs given to the browsers, the host is part of the signature.
+    // Signing needs no request since the region is set.
+    private final MinioClient presignClient = MinioClient.builder()
+            .endpoint(Optional.ofNullable(System.getenv("MINIO_PUBLIC_URI")).orElse(System.getenv("MINIO_LOCAL_URI")))
+            .credentials(System.getenv("MINIO_USER"), System.getenv("MINIO_PASSWORD"))
+            .region(System.getenv("MINIO_REGION"))
+            .build();
+
+    /**
+     * Validity of the pre-signed URLs, in seconds
+     */
+    private final int presignedUrlExpirySeconds = Utils.intFromEnv(MINIO_PRESIGNED_URL_EXPIRY_S, 300);
+
+    /**
+     * Size of the parts of the multipart uploads, in bytes. Only one part is buffered at a time.
+     * MinIO requires at least 5 MiB.
+     */
+    private final long partSize = Math.max(ObjectWriteArgs.MIN_MULTIPART_SIZE, Utils.intFromEnv(MINIO_UPLOAD_PART_SIZE, ObjectWriteArgs.MIN_MULTIPART_SIZE));
+
+    /**
+     * Maximum size of an uploaded file, in bytes
+     */
+    private final long maxUploadSize = Utils.intFromEnv(MINIO_UPLOAD_MAX_SIZE, 50 * 1024 * 1024);
+
+    /**
+     * Name of the shared bucket, null to use one bucket per owner
+     */
+    private final String sharedBucket = System.getenv(MINIO_SHARED_BUCKET);
+
+    /**
+     * Name of the private bucket holding the uploads until they are checked
+     */
+    private final String stagingBucket = Optional.ofNullable(System.getenv(MINIO_STAGING_BUCKET))
+            .orElse(sharedBucket != null ? sharedBucket + "-staging" : "user-uploads-staging");
+
+    /**
+     * Number of days after which a staged upload is deleted by MinIO
+     */
+    private final int stagingExpiryDays = Math.max(1, Utils.intFromEnv(MINIO_STAGING_EXPIRY_DAYS, 1));
+
+    /**
+     * True once the staging bucket exists with its expiry rule
+     */
+    private volatile boolean stagingBucketReady = false;
+
+    /**
+     * Buckets known to exist. Buckets are never deleted by this service, so entries do not expire.
+     */
+    private final Set<String> knownBuckets = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Buckets known to be missing. Entries expire since another instance may create the bucket.
+     */
+    private final TtlCache<String, Boolean> missingBuckets = new TtlCache<>(
+            Utils.intFromEnv(MINIO_MISSING_BUCKET_CACHE_SIZE, 10000),
+            Utils.intFromEnv(MINIO_MISSING_BUCKET_TTL_MS, 30000)
+    );
+
+    /**
+     * Provision the staging bucket and the shared buckets, or load the existing buckets in the per-owner layout.
+     * Errors are only logged, buckets are then checked on first use.
+     */
+    @PostConstruct
+    public void provisionBuckets() {
+        try {
+            ensureStagingBucket();
+            logger.info("Staging bucket {} provisioned", stagingBucket);
+        } catch (MinioException | IOException | NoSuchAlgorithmException | InvalidKeyException e) {
+            logger.warn("Could not provision the staging bucket: {}", e.getMessage());
+        }
+        try {
+            if (sharedBucket != null) {
+                ensureBucket(sharedBucket, true);
+                // Replace the policy of a bucket created before the bucket listing was denied
+                setBucketPolicy(sharedBucket, sharedBucketPolicy(sharedBucket));
+                ensureBucket(sharedBucket + "-private", false);
+                logger.info("Shared buckets {} provisioned", sharedBucket);
+            } else {
+                for (Bucket bucket : minioClient.listBuckets()) {
+                    knownBuckets.add(bucket.name());
+                }
+                logger.info("{} existing buckets loaded", knownBuckets.size());
+            }
+        } catch (MinioException | IOException | NoSuchAlgorithmException | InvalidKeyException e) {
+            logger.warn("Could not provision the buckets: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Get the bucket of a file.
+     *
+     * @param ownerId:  The id of the owner of the file.
+     * @param isPublic: True if the file is public, false otherwise.
+     * @return The name of the bucket.
+     */
+    private String bucketName(String ownerId, boolean isPublic) {
+        if (sharedBucket == null) {
+            return ownerId;
+        }
+        return isPublic ? sharedBucket : sharedBucket + "-private";
+    }
+
+    /**
+     * Get the object name of a file in its bucket.
+     *
+     * @param ownerId:    The id of the owner of the file.
+     * @param objectName: The name of the file.
+     * @return The name of the object.
+     */
+    private String objectKey(String ownerId, String objectName) {
+        return sharedBucket == null ? objectName : ownerId + "/" + objectName;
+    }
+
+    /**
+     * Get the key of an upload in the staging bucket.
+     *
+     * @param ownerId:    The id of the owner of the upload.
+     * @param uploadName: The name of the upload.
+     * @return The key of the upload.
+     */
+    private String stagingKey(String ownerId, String uploadName) {
+        return ownerId + "/" + uploadName;
+    }
+
+    /**
+     * Get the public URL of a public file.
+     *
+     * @param ownerId:    The id of the owner of the file.
+     * @param objectName: The name of the file.
+     * @return The URL of the file.
+     */
+    public String getPublicUrl(String ownerId, String objectName) {
+        return getFileUrl(ownerId, objectName, true);
+    }
+
+    /**
+     * Get the URL of a file. The URL of a private file can only be read through a pre-signed URL.
+     *
+     * @param ownerId:      The id of the owner of the file.
+     * @param objectName:   The name of the file.
+     * @param isPublicFile: True if the file is public, false otherwise.
+     * @return The URL of the file.
+     */
+    public String getFileUrl(String ownerId, String objectName, boolean isPublicFile) {
+        return System.getenv("MINIO_PUBLIC_URI") + "/" + bucketName(ownerId, isPublicFile) + "/" + objectKey(ownerId, objectName);
+    }
+
+    /**
+     * Get a pre-signed URL to upload a file directly to the staging bucket with a PUT request.
+     * The staging bucket is created if needed, so that the upload does not fail.
+     *
+     * @param ownerId:    The id of the owner of the upload.
+     * @param uploadName: The name of the upload.
+     * @return The pre-signed URL.
+     * @throws MinioException           if an error occurs.
+     * @throws IOException              if an I/O error occurs.
+     * @throws NoSuchAlgorithmException if an algorithm is not available.
+     * @throws InvalidKeyException      if the key is invalid.
+     */
+    public PresignedUrlDTO getPresignedUploadUrl(String ownerId, String uploadName) throws MinioException, IOException, NoSuchAlgorithmException, InvalidKeyException {
+        ensureStagingBucket();
+        return presign(Method.PUT, stagingBucket, stagingKey(ownerId, uploadName));
+    }
+
+    /**
+     * Get a pre-signed URL to download a file directly from Minio with a GET request.
+     *
+     * @param ownerId:      The id of the owner of the file.
+     * @param objectName:   The name of the file.
+     * @param isPublicFile: True if the file is public, false otherwise.
+     * @return The pre-signed URL.
+     * @throws MinioException           if an error occurs.
+     * @throws IOException              if an I/O error occurs.
+     * @throws NoSuchAlgorithmException if an algorithm is not available.
+     * @throws InvalidKeyException      if the key is invalid.
+     */
+    public PresignedUrlDTO getPresignedDownloadUrl(String ownerId, String objectName, boolean isPublicFile) throws MinioException, IOException, NoSuchAlgorithmException, InvalidKeyException {
+        return presign(Method.GET, bucketName(ownerId, isPublicFile), objectKey(ownerId, objectName));
+    }
+
+    /**
+     * Sign a URL to an object.
+     *
+     * @param method:     The HTTP method allowed by the URL.
+     * @param bucketName: The name of the bucket.
+     * @param key:        The key of the object.
+     * @return The pre-signed URL.
+     * @throws MinioException           if an error occurs.
+     * @throws IOException              if an I/O error occurs.
+     * @throws NoSuchAlgorithmException if an algorithm is not available.
+     * @throws InvalidKeyException      if the key is invalid.
+     */
+    private PresignedUrlDTO presign(Method method, String bucketName, String key) throws MinioException, IOException, NoSuchAlgorithmException, InvalidKeyException {
+        Date expiresAt = new Date(System.currentTimeMillis() + presignedUrlExpirySeconds * 1000L);
+        String url = presignClient.getPresignedObjectUrl(
+                GetPresignedObjectUrlArgs
+                        .builder()
+                        .method(method)
+                        .bucket(bucketName)
+                        .object(key)
+                        .expiry(presignedUrlExpirySeconds, TimeUnit.SECONDS)
+                        .build());
+        return new PresignedUrlDTO(url, method.name(), expiresAt);
+    }
+
     /**
      * Create a public bucket in Minio.
      *
@@ -39,6 +286,10 @@ public class MinioService {
      * @throws InvalidKeyException      if the key is invalid.
      */
     private void createPublicBucket(String bucketName) throws MinioException, IOException, NoSuchAlgorithmException, InvalidKeyException {
+        if (bucketName.equals(sharedBucket)) {
+            createBucket(bucketName, sharedBucketPolicy(bucketName));
+            return;
+        }
 
         // Define the bucket policy.
         String config = "{\n" +
@@ -65,6 +316,27 @@ public class MinioService {
         createBucket(bucketName, config);
     }
 
+    /**
+     * Get the policy of the shared public bucket.
+     * It holds the files of every user, so its objects can be read anonymously but it cannot be listed.
+     *
+     * @param bucketName: The name of the bucket.
+     * @return The policy of the bucket.
+     */
+    private String sharedBucketPolicy(String bucketName) {
+        return "{\n" +
+                "    \"Statement\": [\n" +
+                "        {\n" +
+                "            \"Action\": \"s3:GetObject\",\n" +
+                "            \"Effect\": \"Allow\",\n" +
+                "            \"Principal\": \"*\",\n" +
+                "            \"Resource\": \"arn:aws:s3:::" + bucketName + "/*\"\n" +
+                "        }\n" +
+                "    ],\n" +
+                "    \"Version\": \"2012-10-17\"\n" +
+                "}";
+    }
+
     /**
      * Create a private bucket in Minio.
      *
@@ -126,7 +398,20 @@ public class MinioService {
                         .build()
         );
 
-        // Setting the bucket policy.
+        setBucketPolicy(bucketName, config);
+    }
+
+    /**
+     * Set the policy of a bucket in Minio.
+     *
+     * @param bucketName: The name of the bucket.
+     * @param config:     The policy of the bucket.
+     * @throws MinioException           if an error occurs.
+     * @throws IOException              if an I/O error occurs.
+     * @throws NoSuchAlgorithmException if an algorithm is not available.
+     * @throws InvalidKeyException      if the key is invalid.
+     */
+    private void setBucketPolicy(String bucketName, String config) throws MinioException, IOException, NoSuchAlgorithmException, InvalidKeyException {
         minioClient.setBucketPolicy(
                 SetBucketPolicyArgs
                         .builder()
@@ -154,6 +439,7 @@ public class MinioService {
 
     /**
      * Create a bucket if it does not exist.
+     * Buckets already checked are not checked again.
      *
      * @param bucketName: The name of the bucket.
      * @param isPublic:   True if the bucket should be public, false otherwise.
@@ -162,76 +448,371 @@ public class MinioService {
      * @throws NoSuchAlgorithmException if an algorithm is not available.
      * @throws InvalidKeyException      if the key is invalid.
      */
-    private void createBucketIfNotExists(String bucketName, boolean isPublic) throws MinioException, IOException, NoSuchAlgorithmException, InvalidKeyException {
-        if (!bucketExists(bucketName)) {
-            if (isPublic) {
-                createPublicBucket(bucketName);
-            } else {
-                createPrivateBucket(bucketName);
+    private void ensureBucket(String bucketName, boolean isPublic) throws MinioException, IOException, NoSuchAlgorithmException, InvalidKeyException {
+        if (knownBuckets.contains(bucketName)) {
+            return;
+        }
+        if (missingBuckets.get(bucketName) != null || !bucketExists(bucketName)) {
+            try {
+                if (isPublic) {
+                    createPublicBucket(bucketName);
+                } else {
+                    createPrivateBucket(bucketName);
+                }
+            } catch (ErrorResponseException e) {
+                // Created meanwhile by another request or instance, which also sets the policy
+                if (!"BucketAlreadyOwnedByYou".equals(e.errorResponse().code())) {
+                    throw e;
+                }
             }
         }
+        missingBuckets.invalidate(bucketName);
+        knownBuckets.add(bucketName);
     }
 
     /**
-     * Upload a file to Minio.
+     * Create the staging bucket if it does not exist, and make MinIO delete the uploads that are never completed,
+     * including the multipart uploads interrupted before their last part.
      *
-     * @param bucketName:    The name of the bucket.
-     * @param objectName:    The name of the object.
-     * @param multipartFile: The file to upload.
+     * @throws MinioException           if an error occurs.
+     * @throws IOException              if an I/O error occurs.
+     * @throws NoSuchAlgorithmException if an algorithm is not available.
+     * @throws InvalidKeyException      if the key is invalid.
+     */
+    private void ensureStagingBucket() throws MinioException, IOException, NoSuchAlgorithmException, InvalidKeyException {
+        if (stagingBucketReady) {
+            return;
+        }
+        ensureBucket(stagingBucket, false);
+
+        LifecycleRule rule = new LifecycleRule(
+                Status.ENABLED,
+                new AbortIncompleteMultipartUpload(stagingExpiryDays),
+                new Expiration((ZonedDateTime) null, stagingExpiryDays, null),
+                new RuleFilter(""),
+                "expire-staged-uploads",
+                null,
+                null,
+                null);
+        minioClient.setBucketLifecycle(
+                SetBucketLifecycleArgs
+                        .builder()
+                        .bucket(stagingBucket)
+                        .config(new LifecycleConfiguration(List.of(rule)))
+                        .build());
+        stagingBucketReady = true;
+    }
+
+    /**
+     * Upload a stream to Minio without buffering it, hashing it on the way.
+     * The stream is sent in parts of MINIO_UPLOAD_PART_SIZE bytes with a multipart upload, so only one part is held
+     * in memory at a time. The stream is not closed.
+     *
+     * @param ownerId:      The id of the owner of the file.
+     * @param objectName:   The name of the file.
+     * @param stream:       The content to upload.
+     * @param size:         The size of the content, or -1 if it is unknown.
+     * @param contentType:  The content type of the content.
+     * @param isPublicFile: True if the bucket should be public, false otherwise.
      * @throws IOException              If an I/O error occurs.
      * @throws NoSuchAlgorithmException If the algorithm SHA-256 is not available.
      * @throws InvalidKeyException      If the key is invalid.
+     * @throws MinioException           If an error occurs.
+     * @return The hexadecimal SHA-256 hash of the content.
+     * @throws HttpClientErrorException If the content is larger than MINIO_UPLOAD_MAX_SIZE.
      */
-    public void uploadFile(String bucketName, String objectName, MultipartFile multipartFile, boolean isPublicFile) throws IOException, NoSuchAlgorithmException, InvalidKeyException, MinioException {
+    public String uploadStream(String ownerId, String objectName, InputStream stream, long size, String contentType, boolean isPublicFile) throws IOException, NoSuchAlgorithmException, InvalidKeyException, MinioException, HttpClientErrorException {
         logger.info("Starting the upload of a file to Minio");
 
-        createBucketIfNotExists(bucketName, isPublicFile);
+        if (size > maxUploadSize) {
+            throw new HttpClientErrorException(HttpStatus.PAYLOAD_TOO_LARGE, "File larger than " + maxUploadSize + " bytes");
+        }
 
-        // Get the input stream.
-        InputStream fileInputStream = multipartFile.getInputStream();
+        String bucketName = bucketName(ownerId, isPublicFile);
+        ensureBucket(bucketName, isPublicFile);
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        putStream(bucketName, objectKey(ownerId, objectName), stream, size, contentType, digest);
+        return HexFormat.of().formatHex(digest.digest());
+    }
 
-        // Upload the file to the bucket with putObject.
-        minioClient.putObject(
+    /**
+     * Upload a stream to the staging bucket without buffering it, hashing it on the way.
+     * The stream is not closed.
+     *
+     * @param ownerId:     The id of the owner of the upload.
+     * @param uploadName:  The name of the upload.
+     * @param stream:      The content to upload.
+     * @param size:        The size of the content, or -1 if it is unknown.
+     * @param contentType: The content type of the content.
+     * @throws IOException              If an I/O error occurs.
+     * @throws NoSuchAlgorithmException If the algorithm SHA-256 is not available.
+     * @throws InvalidKeyException      If the key is invalid.
+     * @throws MinioException           If an error occurs.
+     * @return The staged upload.
+     * @throws HttpClientErrorException If the content is larger than MINIO_UPLOAD_MAX_SIZE.
+     */
+    public StagedUpload stageStream(String ownerId, String uploadName, InputStream stream, long size, String contentType) throws IOException, NoSuchAlgorithmException, InvalidKeyException, MinioException, HttpClientErrorException {
+        logger.info("Starting the staging of a file in Minio");
+
+        if (size > maxUploadSize) {
+            throw new HttpClientErrorException(HttpStatus.PAYLOAD_TOO_LARGE, "File larger than " + maxUploadSize + " bytes");
+        }
+
+        ensureStagingBucket();
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        ObjectWriteResponse response = putStream(stagingBucket, stagingKey(ownerId, uploadName), stream, size, contentType, digest);
+        return new StagedUpload(uploadName, response.etag(), HexFormat.of().formatHex(digest.digest()));
+    }
+
+    /**
+     * Upload a stream to an existing bucket in parts of MINIO_UPLOAD_PART_SIZE bytes, hashing it on the way.
+     *
+     * @param bucketName:  The name of the bucket.
+     * @param key:         The key of the object.
+     * @param stream:      The content to upload.
+     * @param size:        The size of the content, or -1 if it is unknown.
+     * @param contentType: The content type of the content.
+     * @param digest:      The digest updated with the content.
+     * @throws IOException              If an I/O error occurs.
+     * @throws NoSuchAlgorithmException If an algorithm is not available.
+     * @throws InvalidKeyException      If the key is invalid.
+     * @throws MinioException           If an error occurs.
+     * @return The response of Minio.
+     * @throws HttpClientErrorException If the content is larger than MINIO_UPLOAD_MAX_SIZE.
+     */
+    private ObjectWriteResponse putStream(String bucketName, String key, InputStream stream, long size, String contentType, MessageDigest digest) throws IOException, NoSuchAlgorithmException, InvalidKeyException, MinioException, HttpClientErrorException {
+        // Upload the file to the bucket with putObject, the size limit also covers streams of unknown size.
+        DigestInputStream digestStream = new DigestInputStream(new SizeLimitedInputStream(stream, maxUploadSize), digest);
+        ObjectWriteResponse response = minioClient.putObject(
                 PutObjectArgs.builder()
                         .bucket(bucketName)
-                        .object(objectName)
-                        .contentType(multipartFile.getContentType())
-                        .stream(fileInputStream, fileInputStream.available(), -1)
+                        .object(key)
+                        .contentType(contentType)
+                        .stream(digestStream, size < 0 ? -1 : size, partSize)
                         .build());
 
-        // Close the file stream.
-        fileInputStream.close();
-
         logger.info("Completed the upload of a file to Minio");
+        return response;
     }
 
     /**
-     * Delete a file from a bucket.
+     * Check a file uploaded to the staging bucket with a pre-signed URL.
+     * A file larger than MINIO_UPLOAD_MAX_SIZE is deleted, since the size of a pre-signed upload cannot be limited.
+     * The hash is the SHA-256 checksum verified by Minio when the file was uploaded, so the file is not read again.
      *
-     * @param bucketName: The name of the bucket.
-     * @param objectName: The name of the object.
+     * @param ownerId:    The id of the owner of the upload.
+     * @param uploadName: The name of the upload.
+     * @return The checked upload.
      * @throws MinioException           if an error occurs.
      * @throws IOException              if an I/O error occurs.
      * @throws NoSuchAlgorithmException if an algorithm is not available.
      * @throws InvalidKeyException      if the key is invalid.
-     * @throws HttpClientErrorException if the bucket or the object is not found.
+     * @throws HttpClientErrorException if the file is not found, too large or uploaded without a SHA-256 checksum.
      */
-    public void deleteFileFromBucket(String bucketName, String objectName) throws MinioException, IOException, NoSuchAlgorithmException, InvalidKeyException, HttpClientErrorException {
-        boolean found = minioClient.bucketExists(BucketExistsArgs.builder().bucket(bucketName).build()) || minioClient.getObject(
-                GetObjectArgs.builder()
-                        .bucket(bucketName)
-                        .object(objectName)
-                        .build()
-        ) != null;
-        if (!found) {
-            throw new HttpClientErrorException(HttpStatus.NOT_FOUND, "Bucket or object not found");
+    public StagedUpload verifyUpload(String ownerId, String uploadName) throws MinioException, IOException, NoSuchAlgorithmException, InvalidKeyException, HttpClientErrorException {
+        StatObjectResponse stat;
+        try {
+            stat = minioClient.statObject(
+                    StatObjectArgs
+                            .builder()
+                            .bucket(stagingBucket)
+                            .object(stagingKey(ownerId, uploadName))
+                            .extraHeaders(Map.of(CHECKSUM_MODE_HEADER, "ENABLED"))
+                            .build());
+        } catch (ErrorResponseException e) {
+            String code = e.errorResponse().code();
+            if ("NoSuchKey".equals(code) || "NoSuchBucket".equals(code)) {
+                throw new HttpClientErrorException(HttpStatus.NOT_FOUND, "File not uploaded");
+            }
+            throw e;
+        }
+
+        if (stat.size() > maxUploadSize) {
+            deleteUpload(ownerId, uploadName);
+            throw new HttpClientErrorException(HttpStatus.PAYLOAD_TOO_LARGE, "File larger than " + maxUploadSize + " bytes");
         }
 
+        // A composite checksum of a multipart upload ends with "-<number of parts>" and is not the hash of the file
+        String checksum = stat.headers().get(CHECKSUM_SHA256_HEADER);
+        byte[] sha256 = new byte[0];
+        if (checksum != null && !checksum.contains("-")) {
+            try {
+                sha256 = Base64.getDecoder().decode(checksum);
+            } catch (IllegalArgumentException e) {
+                logger.warn("Invalid checksum of a staged upload: {}", checksum);
+            }
+        }
+        if (sha256.length != 32) {
+            throw new HttpClientErrorException(HttpStatus.BAD_REQUEST, "File not uploaded with a " + CHECKSUM_SHA256_HEADER + " header");
+        }
+        return new StagedUpload(uploadName, stat.etag(), HexFormat.of().formatHex(sha256));
+    }
+
+    /**
+     * Get the content of a checked upload.
+     *
+     * @param ownerId: The id of the owner of the upload.
+     * @param upload:  The checked upload.
+     * @return The content of the upload, to be closed by the caller.
+     * @throws MinioException           if an error occurs.
+     * @throws IOException              if an I/O error occurs.
+     * @throws NoSuchAlgorithmException if an algorithm is not available.
+     * @throws InvalidKeyException      if the key is invalid.
+     * @throws HttpClientErrorException if the upload was replaced since it was checked.
+     */
+    public InputStream getUpload(String ownerId, StagedUpload upload) throws MinioException, IOException, NoSuchAlgorithmException, InvalidKeyException, HttpClientErrorException {
+        try {
+            return minioClient.getObject(
+                    GetObjectArgs
+                            .builder()
+                            .bucket(stagingBucket)
+                            .object(stagingKey(ownerId, upload.name()))
+                            .matchETag(upload.etag())
+                            .build());
+        } catch (ErrorResponseException e) {
+            if ("PreconditionFailed".equals(e.errorResponse().code())) {
+                throw uploadReplaced();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Copy a checked upload from the staging bucket to its final bucket, on the Minio side.
+     * The upload is kept in the staging bucket.
+     *
+     * @param ownerId:      The id of the owner of the file.
+     * @param upload:       The checked upload.
+     * @param objectName:   The final name of the file.
+     * @param isPublicFile: True if the file is public, false otherwise.
+     * @throws MinioException           if an error occurs.
+     * @throws IOException              if an I/O error occurs.
+     * @throws NoSuchAlgorithmException if an algorithm is not available.
+     * @throws InvalidKeyException      if the key is invalid.
+     * @throws HttpClientErrorException if the upload was replaced since it was checked.
+     */
+    public void publishUpload(String ownerId, StagedUpload upload, String objectName, boolean isPublicFile) throws MinioException, IOException, NoSuchAlgorithmException, InvalidKeyException, HttpClientErrorException {
+        String bucketName = bucketName(ownerId, isPublicFile);
+        ensureBucket(bucketName, isPublicFile);
+        try {
+            minioClient.copyObject(
+                    CopyObjectArgs
+                            .builder()
+                            .bucket(bucketName)
+                            .object(objectKey(ownerId, objectName))
+                            .source(CopySource
+                                    .builder()
+                                    .bucket(stagingBucket)
+                                    .object(stagingKey(ownerId, upload.name()))
+                                    .matchETag(upload.etag())
+                                    .build())
+                            .build());
+        } catch (ErrorResponseException e) {
+            if ("PreconditionFailed".equals(e.errorResponse().code())) {
+                throw uploadReplaced();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Report a read of an upload whose ETag no longer matches, the client uploaded it again meanwhile.
+     *
+     * @return The exception to throw.
+     */
+    private HttpClientErrorException uploadReplaced() {
+        return new HttpClientErrorException(HttpStatus.CONFLICT, "File replaced while it was checked");
+    }
+
+    /**
+     * Delete a staged upload.
+     * Deleting a missing upload is not an error.
+     *
+     * @param ownerId:    The id of the owner of the upload.
+     * @param uploadName: The name of the upload.
+     * @throws MinioException           if an error occurs.
+     * @throws IOException              if an I/O error occurs.
+     * @throws NoSuchAlgorithmException if an algorithm is not available.
+     * @throws InvalidKeyException      if the key is invalid.
+     */
+    public void deleteUpload(String ownerId, String uploadName) throws MinioException, IOException, NoSuchAlgorithmException, InvalidKeyException {
         minioClient.removeObject(
                 RemoveObjectArgs
                         .builder()
-                        .bucket(bucketName)
-                        .object(objectName)
+                        .bucket(stagingBucket)
+                        .object(stagingKey(ownerId, uploadName))
                         .build());
     }
+
+    /**
+     * Delete a file.
+     * Deleting a missing file of an existing bucket is not an error.
+     *
+     * @param ownerId:      The id of the owner of the file.
+     * @param objectName:   The name of the file.
+     * @param isPublicFile: True if the file is public, false otherwise.
+     * @throws MinioException           if an error occurs.
+     * @throws IOException              if an I/O error occurs.
+     * @throws NoSuchAlgorithmException if an algorithm is not available.
+     * @throws InvalidKeyException      if the key is invalid.
+     * @throws HttpClientErrorException if the bucket is not found.
+     */
+    public void deleteFile(String ownerId, String objectName, boolean isPublicFile) throws MinioException, IOException, NoSuchAlgorithmException, InvalidKeyException, HttpClientErrorException {
+        deleteFiles(ownerId, List.of(objectName), isPublicFile);
+    }
+
+    /**
+     * Delete several files of an owner with a single request.
+     * Deleting a missing file of an existing bucket is not an error.
+     *
+     * @param ownerId:      The id of the owner of the files.
+     * @param objectNames:  The names of the files.
+     * @param isPublicFile: True if the files are public, false otherwise.
+     * @throws MinioException           if an error occurs.
+     * @throws IOException              if an I/O error occurs.
+     * @throws NoSuchAlgorithmException if an algorithm is not available.
+     * @throws InvalidKeyException      if the key is invalid.
+     * @throws HttpClientErrorException if the bucket is not found.
+     */
+    public void deleteFiles(String ownerId, Collection<String> objectNames, boolean isPublicFile) throws MinioException, IOException, NoSuchAlgorithmException, InvalidKeyException, HttpClientErrorException {
+        String bucketName = bucketName(ownerId, isPublicFile);
+        if (missingBuckets.get(bucketName) != null) {
+            throw new HttpClientErrorException(HttpStatus.NOT_FOUND, "Bucket or object not found");
+        }
+
+        List<DeleteObject> objects = objectNames.stream().map(objectName -> new DeleteObject(objectKey(ownerId, objectName))).toList();
+        try {
+            // The request is sent while iterating the results
+            for (Result<DeleteError> result : minioClient.removeObjects(
+                    RemoveObjectsArgs
+                            .builder()
+                            .bucket(bucketName)
+                            .objects(objects)
+                            .build())) {
+                DeleteError error = result.get();
+                if ("NoSuchBucket".equals(error.code())) {
+                    throw bucketNotFound(bucketName);
+                }
+                logger.warn("Could not delete {} from {}: {}", error.objectName(), bucketName, error.message());
+            }
+            knownBuckets.add(bucketName);
+        } catch (ErrorResponseException e) {
+            if ("NoSuchBucket".equals(e.errorResponse().code())) {
+                throw bucketNotFound(bucketName);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Remember that a bucket is missing.
+     *
+     * @param bucketName: The name of the bucket.
+     * @return The exception to throw.
+     */
+    private HttpClientErrorException bucketNotFound(String bucketName) {
+        knownBuckets.remove(bucketName);
+        missingBuckets.put(bucketName, true);
+        return new HttpClientErrorException(HttpStatus.NOT_FOUND, "Bucket or object not found");
+    }
 }
@@ -1,11 +1,7 @@
 package fr.polytech.service;
 
-import fr.polytech.Util.Utils;
 import fr.polytech.model.ReferenceDTO;
-import fr.polytech.model.request.UpdateDTO;
 import fr.polytech.model.response.user.BaseUserResponse;
-import fr.polytech.model.response.user.CandidateUserResponse;
-import org.keycloak.admin.client.resource.UserResource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,11 +10,8 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.UUID;
-
 import static fr.polytech.constant.Env.REFERENCE_API_URI;
+import static fr.polytech.service.UserWriteQueueService.UserList.REFERENCE;
 
 @Service
 public class ReferenceService {
@@ -33,6 +26,9 @@ public class ReferenceService {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private UserWriteQueueService userWriteQueueService;
+
     /**
      * Add a reference to a candidate.
      *
@@ -46,27 +42,10 @@ public class ReferenceService {
 
         validateUser(id, token);
 
-        UserResource userResource = userService.getKeycloakUserResource(id);
-        BaseUserResponse userResponse = Utils.userRepresentationToUserResponse(userResource.toRepresentation());
-        CandidateUserResponse userToUpdate = (CandidateUserResponse) userResponse;
-
         ReferenceDTO referenceResponse = createReferenceRequest(reference, token);
-        List<UUID> references = userToUpdate.getReferenceIdList();
-
-        if (references == null) {
-            references = new ArrayList<>();
-        }
-
-        references.add(referenceResponse.getId());
 
         // Update user
-        UpdateDTO updateDTO = new UpdateDTO();
-        updateDTO.setReferenceIdList(references);
-        // Don't update the other fields
-        updateDTO.setAvailabilityIdList(userToUpdate.getAvailabilityIdList());
-        updateDTO.setExperienceIdList(userToUpdate.getExperienceIdList());
-        updateDTO.setReviewIdList(userToUpdate.getReviewIdList());
-        return userService.updateUser(id, updateDTO);
+        return userWriteQueueService.addToList(id, REFERENCE, referenceResponse.getId());
     }
 
     /**
@@ -83,25 +62,8 @@ public class ReferenceService {
 
         validateUser(id, token);
 
-        UserResource userResource = userService.getKeycloakUserResource(id);
-        BaseUserResponse userResponse = Utils.userRepresentationToUserResponse(userResource.toRepresentation());
-        CandidateUserResponse userToUpdate = (CandidateUserResponse) userResponse;
-
-        List<UUID> references = userToUpdate.getReferenceIdList();
-        if (references == null || !references.contains(reference.getId())) {
-            throw new HttpClientErrorException(HttpStatus.NOT_FOUND, "Reference not found");
-        }
-        references.remove(reference.getId());
-
-        // Update user
-        UpdateDTO updateDTO = new UpdateDTO();
-        updateDTO.setReferenceIdList(references);
-        // Don't update the other fields
-        updateDTO.setAvailabilityIdList(userToUpdate.getAvailabilityIdList());
-        updateDTO.setExperienceIdList(userToUpdate.getExperienceIdList());
-        updateDTO.setReviewIdList(userToUpdate.getReviewIdList());
-
-        BaseUserResponse updatedUser = userService.updateUser(id, updateDTO);
+        // Update user, fails if the reference is not in the list
+        BaseUserResponse updatedUser = userWriteQueueService.removeFromList(id, REFERENCE, reference.getId());
 
         // Remove reference from reference API
         removeReferenceRequest(reference, token);
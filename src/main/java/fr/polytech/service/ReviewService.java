@@ -1,25 +1,17 @@
 package fr.polytech.service;
 
-import fr.polytech.Util.Utils;
 import fr.polytech.model.ReviewDTO;
-import fr.polytech.model.request.UpdateDTO;
 import fr.polytech.model.response.user.BaseUserResponse;
-import fr.polytech.model.response.user.CandidateUserResponse;
-import org.keycloak.admin.client.resource.UserResource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.*;
-import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.UUID;
-
 import static fr.polytech.constant.Env.REVIEW_API_URI;
+import static fr.polytech.service.UserWriteQueueService.UserList.REVIEW;
 
 @Service
 public class ReviewService {
@@ -34,6 +26,9 @@ public class ReviewService {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private UserWriteQueueService userWriteQueueService;
+
     @Autowired
     private ApiService apiService;
 
@@ -51,17 +46,9 @@ public class ReviewService {
     public BaseUserResponse addReview(String id, ReviewDTO review, String token) {
         logger.info("Adding review to user with ID " + id);
 
-        UserResource userResource = userService.getKeycloakUserResource(id);
-        BaseUserResponse userResponse = Utils.userRepresentationToUserResponse(userResource.toRepresentation());
-        CandidateUserResponse userToUpdate = (CandidateUserResponse) userResponse;
+        // Fail before creating the review if the user does not exist
+        userService.getUserById(id);
         ReviewDTO reviewResponse = createReviewRequest(review, token);
-        List<UUID> reviews = userToUpdate.getReviewIdList();
-
-        if (reviews == null) {
-            reviews = new ArrayList<>();
-        }
-
-        reviews.add(reviewResponse.getId());
 
         logger.info("token to send {}", token);
         HttpHeaders headers = new HttpHeaders();
@@ -70,19 +57,12 @@ public class ReviewService {
 
         // Création d'une entité HTTP avec en-têtes
         HttpEntity<String> requestEntity = new HttpEntity<>(headers);
-        restTemplate.setRequestFactory(new HttpComponentsClientHttpRequestFactory());
 
         // Envoi de la requête PATCH avec un corps null
         ResponseEntity<String> responseEntity = restTemplate.exchange(System.getenv("OFFER_API_URI") + "/reviewed/" + review.getOfferId(), HttpMethod.PATCH, requestEntity, String.class);
 
         // Update user
-        UpdateDTO updateDTO = new UpdateDTO();
-        updateDTO.setReviewIdList(reviews);
-        // Don't update other fields
-        updateDTO.setReferenceIdList(userToUpdate.getReferenceIdList());
-        updateDTO.setExperienceIdList(userToUpdate.getExperienceIdList());
-        updateDTO.setAvailabilityIdList(userToUpdate.getAvailabilityIdList());
-        return userService.updateUser(id, updateDTO);
+        return userWriteQueueService.addToList(id, REVIEW, reviewResponse.getId());
     }
 
     /**
@@ -97,25 +77,8 @@ public class ReviewService {
     public BaseUserResponse deleteReview(String id, ReviewDTO review, String token) throws HttpClientErrorException {
         logger.info("Removing review from user with ID " + id);
 
-        UserResource userResource = userService.getKeycloakUserResource(id);
-        BaseUserResponse userResponse = Utils.userRepresentationToUserResponse(userResource.toRepresentation());
-        CandidateUserResponse userToUpdate = (CandidateUserResponse) userResponse;
-
-        List<UUID> reviews = userToUpdate.getReviewIdList();
-        if (reviews == null || !reviews.contains(review.getId())) {
-            throw new HttpClientErrorException(HttpStatus.NOT_FOUND, "Review not found");
-        }
-        reviews.remove(review.getId());
-
-        // Update user
-        UpdateDTO updateDTO = new UpdateDTO();
-        updateDTO.setReviewIdList(reviews);
-        // Don't update other fields
-        updateDTO.setReferenceIdList(userToUpdate.getReferenceIdList());
-        updateDTO.setExperienceIdList(userToUpdate.getExperienceIdList());
-        updateDTO.setAvailabilityIdList(userToUpdate.getAvailabilityIdList());
-
-        BaseUserResponse updatedUser = userService.updateUser(id, updateDTO);
+        // Update user, fails if the review is not in the list
+        BaseUserResponse updatedUser = userWriteQueueService.removeFromList(id, REVIEW, review.getId());
 
         // Remove review from review API
         removeReviewRequest(review, token);
@@ -0,0 +1,391 @@
+package fr.polytech.service;
+
+import fr.polytech.Util.Utils;
+import fr.polytech.model.request.UpdateDTO;
+import fr.polytech.model.response.PresignedUrlDTO;
+import fr.polytech.model.response.user.BaseUserResponse;
+import fr.polytech.model.response.user.CandidateUserResponse;
+import fr.polytech.model.response.user.RecruiterCandidate;
+import fr.polytech.service.MinioService.StagedUpload;
+import io.minio.errors.MinioException;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import static fr.polytech.constant.Files.CV;
+import static fr.polytech.constant.Files.CV_UPLOAD;
+import static fr.polytech.constant.Images.PROFILE_PICTURE;
+import static fr.polytech.constant.Images.PROFILE_PICTURE_UPLOAD;
+
+/**
+ * Service managing the files of the users: profile pictures and CVs.
+ * Files are content-addressed: they are stored under "<kind>-<SHA-256 of the content>", so uploading the same
+ * content again is detected by comparing names, and neither the file nor the user is written again.
+ * Every upload is first staged in the private staging bucket under a name unique to the request, and only copied to
+ * its final bucket once it is checked, the staged upload is then deleted whatever the outcome.
+ */
+@Service
+public class UserFileService {
+
+    private final Logger logger = LoggerFactory.getLogger(UserFileService.class);
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private MinioService minioService;
+
+    @Autowired
+    private ImageService imageService;
+
+    /**
+     * Add a profile picture from a stream.
+     * The stream is staged under a temporary name and hashed on the way.
+     *
+     * @param id          User id
+     * @param stream      Content of the picture
+     * @param size        Size of the picture, or -1 if it is unknown
+     * @param contentType Content type of the picture
+     * @return Updated user
+     * @throws HttpClientErrorException if the picture is not a supported image or is too large, or the user is not found
+     * @throws MinioException           if an error occurs
+     * @throws IOException              if an I/O error occurs
+     * @throws NoSuchAlgorithmException if an algorithm is not available
+     * @throws InvalidKeyException      if the key is invalid
+     */
+    public BaseUserResponse addProfilePicture(String id, InputStream stream, long size, String contentType) throws HttpClientErrorException, MinioException, IOException, NoSuchAlgorithmException, InvalidKeyException {
+        String uploadName = uploadName(PROFILE_PICTURE_UPLOAD, UUID.randomUUID());
+        try {
+            StagedUpload upload = minioService.stageStream(id, uploadName, stream, size, contentType);
+            return completeProfilePicture(id, upload, getFreshUser(id));
+        } finally {
+            deleteUploadQuietly(id, uploadName);
+        }
+    }
+
+    /**
+     * Add a profile picture from a multipart file.
+     * The file is already stored by the container, so it is hashed first and not staged at all if it is the
+     * current picture.
+     *
+     * @param id   User id
+     * @param file Profile picture file
+     * @return Updated user
+     * @throws HttpClientErrorException if the picture is not a supported image or is too large, or the user is not found
+     * @throws MinioException           if an error occurs
+     * @throws IOException              if an I/O error occurs
+     * @throws NoSuchAlgorithmException if an algorithm is not available
+     * @throws InvalidKeyException      if the key is invalid
+     */
+    public BaseUserResponse addProfilePicture(String id, MultipartFile file) throws HttpClientErrorException, MinioException, IOException, NoSuchAlgorithmException, InvalidKeyException {
+        String hash;
+        try (InputStream stream = file.getInputStream()) {
+            hash = Utils.sha256(stream);
+        }
+
+        String objectName = Utils.contentAddressedName(PROFILE_PICTURE, hash);
+        BaseUserResponse user = getFreshUser(id);
+        if (objectName.equals(Utils.objectNameFromUrl(getProfilePictureUrl(user)))) {
+            logger.info("Profile picture unchanged");
+            return user;
+        }
+
+        String uploadName = uploadName(PROFILE_PICTURE_UPLOAD, UUID.randomUUID());
+        try {
+            StagedUpload upload;
+            try (InputStream stream = file.getInputStream()) {
+                upload = minioService.stageStream(id, uploadName, stream, file.getSize(), file.getContentType());
+            }
+            return completeProfilePicture(id, upload, user);
+        } finally {
+            deleteUploadQuietly(id, uploadName);
+        }
+    }
+
+    /**
+     * Get a pre-signed URL to upload a profile picture directly to the MinIO staging bucket.
+     * The URL targets a new upload, whose id must be given back to complete it.
+     *
+     * @param id User id
+     * @return Pre-signed PUT URL with the upload id
+     * @throws MinioException           if an error occurs
+     * @throws IOException              if an I/O error occurs
+     * @throws NoSuchAlgorithmException if an algorithm is not available
+     * @throws InvalidKeyException      if the key is invalid
+     */
+    public PresignedUrlDTO getProfilePictureUploadUrl(String id) throws MinioException, IOException, NoSuchAlgorithmException, InvalidKeyException {
+        return getUploadUrl(id, PROFILE_PICTURE_UPLOAD);
+    }
+
+    /**
+     * Complete the upload of a profile picture sent with a pre-signed URL.
+     *
+     * @param id       User id
+     * @param uploadId Id of the upload, given with the pre-signed URL
+     * @return Updated user
+     * @throws HttpClientErrorException if the picture is missing, sent without its checksum, not a supported image,
+     *                                  too large or replaced meanwhile, or the user is not found
+     * @throws MinioException           if an error occurs
+     * @throws IOException              if an I/O error occurs
+     * @throws NoSuchAlgorithmException if an algorithm is not available
+     * @throws InvalidKeyException      if the key is invalid
+     */
+    public BaseUserResponse completeProfilePictureUpload(String id, UUID uploadId) throws HttpClientErrorException, MinioException, IOException, NoSuchAlgorithmException, InvalidKeyException {
+        String uploadName = uploadName(PROFILE_PICTURE_UPLOAD, uploadId);
+        try {
+            StagedUpload upload = minioService.verifyUpload(id, uploadName);
+            return completeProfilePicture(id, upload, getFreshUser(id));
+        } finally {
+            deleteUploadQuietly(id, uploadName);
+        }
+    }
+
+    /**
+     * Remove the profile picture of a user with its variants.
+     * The pictures stored before content addressing are removed too.
+     *
+     * @param id User id
+     * @return Updated user
+     * @throws HttpClientErrorException if the bucket or the user is not found
+     * @throws MinioException           if an error occurs
+     * @throws IOException              if an I/O error occurs
+     * @throws NoSuchAlgorithmException if an algorithm is not available
+     * @throws InvalidKeyException      if the key is invalid
+     */
+    public BaseUserResponse removeProfilePicture(String id) throws HttpClientErrorException, MinioException, IOException, NoSuchAlgorithmException, InvalidKeyException {
+        Set<String> objectNames = new LinkedHashSet<>(imageService.getObjectNames(PROFILE_PICTURE));
+        objectNames.add(id);
+        String current = Utils.objectNameFromUrl(getProfilePictureUrl(userService.getUserById(id)));
+        if (current != null) {
+            objectNames.addAll(imageService.getObjectNames(current));
+        }
+        minioService.deleteFiles(id, objectNames, true);
+
+        UpdateDTO updateDTO = new UpdateDTO();
+        updateDTO.setProfilePictureUrl(null);
+        return userService.updateUser(id, updateDTO);
+    }
+
+    /**
+     * Get a pre-signed URL to upload a CV directly to the MinIO staging bucket.
+     * The URL targets a new upload, whose id must be given back to complete it.
+     *
+     * @param id User id
+     * @return Pre-signed PUT URL with the upload id
+     * @throws MinioException           if an error occurs
+     * @throws IOException              if an I/O error occurs
+     * @throws NoSuchAlgorithmException if an algorithm is not available
+     * @throws InvalidKeyException      if the key is invalid
+     */
+    public PresignedUrlDTO getCvUploadUrl(String id) throws MinioException, IOException, NoSuchAlgorithmException, InvalidKeyException {
+        return getUploadUrl(id, CV_UPLOAD);
+    }
+
+    /**
+     * Complete the upload of a CV sent with a pre-signed URL.
+     *
+     * @param id       User id
+     * @param uploadId Id of the upload, given with the pre-signed URL
+     * @return Updated user
+     * @throws HttpClientErrorException if the CV is missing, sent without its checksum, too large or replaced
+     *                                  meanwhile, or the user is not found
+     * @throws MinioException           if an error occurs
+     * @throws IOException              if an I/O error occurs
+     * @throws NoSuchAlgorithmException if an algorithm is not available
+     * @throws InvalidKeyException      if the key is invalid
+     */
+    public BaseUserResponse completeCvUpload(String id, UUID uploadId) throws HttpClientErrorException, MinioException, IOException, NoSuchAlgorithmException, InvalidKeyException {
+        String uploadName = uploadName(CV_UPLOAD, uploadId);
+        try {
+            StagedUpload upload = minioService.verifyUpload(id, uploadName);
+            String objectName = Utils.contentAddressedName(CV, upload.sha256());
+
+            BaseUserResponse user = getFreshUser(id);
+            String previous = Utils.objectNameFromUrl(getCvUrl(user));
+            if (objectName.equals(previous)) {
+                logger.info("CV unchanged");
+                return user;
+            }
+
+            minioService.publishUpload(id, upload, objectName, false);
+
+            UpdateDTO updateDTO = new UpdateDTO();
+            updateDTO.setCvUrl(minioService.getFileUrl(id, objectName, false));
+            BaseUserResponse updatedUser = userService.updateUser(id, updateDTO);
+
+            if (previous != null) {
+                deleteQuietly(id, Set.of(previous), false);
+            }
+            logger.info("Added CV to user");
+            return updatedUser;
+        } finally {
+            deleteUploadQuietly(id, uploadName);
+        }
+    }
+
+    /**
+     * Get a pre-signed URL to download the CV of a candidate directly from MinIO.
+     *
+     * @param id User id
+     * @return Pre-signed GET URL
+     * @throws HttpClientErrorException if the user is not found or has no CV
+     * @throws MinioException           if an error occurs
+     * @throws IOException              if an I/O error occurs
+     * @throws NoSuchAlgorithmException if an algorithm is not available
+     * @throws InvalidKeyException      if the key is invalid
+     */
+    public PresignedUrlDTO getCvDownloadUrl(String id) throws HttpClientErrorException, MinioException, IOException, NoSuchAlgorithmException, InvalidKeyException {
+        String objectName = Utils.objectNameFromUrl(getCvUrl(userService.getUserById(id)));
+        if (objectName == null) {
+            throw new HttpClientErrorException(HttpStatus.NOT_FOUND, "CV not found");
+        }
+        return minioService.getPresignedDownloadUrl(id, objectName, false);
+    }
+
+    /**
+     * Publish a staged profile picture under its content-addressed name, with its variants, set the profile picture
+     * URL of the user and delete the previous picture.
+     * Nothing is written if the picture is the current one. The picture is decoded before it is published, so a file
+     * that is not a supported image never reaches the public bucket.
+     *
+     * @param id     User id
+     * @param upload Checked upload of the picture
+     * @param user   Current user
+     * @return Updated user
+     * @throws HttpClientErrorException if the picture is not a supported image or was replaced meanwhile, or the user
+     *                                  is not found
+     * @throws MinioException           if an error occurs
+     * @throws IOException              if an I/O error occurs
+     * @throws NoSuchAlgorithmException if an algorithm is not available
+     * @throws InvalidKeyException      if the key is invalid
+     */
+    private BaseUserResponse completeProfilePicture(String id, StagedUpload upload, BaseUserResponse user) throws HttpClientErrorException, MinioException, IOException, NoSuchAlgorithmException, InvalidKeyException {
+        String objectName = Utils.contentAddressedName(PROFILE_PICTURE, upload.sha256());
+        String previous = Utils.objectNameFromUrl(getProfilePictureUrl(user));
+        if (objectName.equals(previous)) {
+            logger.info("Profile picture unchanged");
+            return user;
+        }
+
+        imageService.createVariants(id, upload, objectName);
+        minioService.publishUpload(id, upload, objectName, true);
+
+        // Update the user's profile picture URL
+        UpdateDTO updateDTO = new UpdateDTO();
+        updateDTO.setProfilePictureUrl(minioService.getPublicUrl(id, objectName));
+        BaseUserResponse updatedUser = userService.updateUser(id, updateDTO);
+
+        if (previous != null) {
+            deleteQuietly(id, imageService.getObjectNames(previous), true);
+        }
+        logger.info("Added profile picture to user");
+        return updatedUser;
+    }
+
+    /**
+     * Get a pre-signed URL to upload a file to a new staged upload.
+     *
+     * @param id   User id
+     * @param kind Kind of the file
+     * @return Pre-signed PUT URL with the upload id
+     * @throws MinioException           if an error occurs
+     * @throws IOException              if an I/O error occurs
+     * @throws NoSuchAlgorithmException if an algorithm is not available
+     * @throws InvalidKeyException      if the key is invalid
+     */
+    private PresignedUrlDTO getUploadUrl(String id, String kind) throws MinioException, IOException, NoSuchAlgorithmException, InvalidKeyException {
+        UUID uploadId = UUID.randomUUID();
+        PresignedUrlDTO presignedUrl = minioService.getPresignedUploadUrl(id, uploadName(kind, uploadId));
+        presignedUrl.setUploadId(uploadId);
+        return presignedUrl;
+    }
+
+    /**
+     * Get the staging name of an upload, unique to the request so that concurrent uploads do not replace each other.
+     *
+     * @param kind     Kind of the file
+     * @param uploadId Id of the upload
+     * @return Name of the upload
+     */
+    private String uploadName(String kind, UUID uploadId) {
+        return kind + "-" + uploadId;
+    }
+
+    /**
+     * Get a user from Keycloak, bypassing the cache, since a stale URL would skip a real change.
+     *
+     * @param id User id
+     * @return User
+     * @throws HttpClientErrorException if the user is not found
+     */
+    private BaseUserResponse getFreshUser(String id) throws HttpClientErrorException {
+        UserRepresentation userRepresentation = userService.getFreshUserRepresentation(id);
+        if (userRepresentation == null) {
+            throw new HttpClientErrorException(HttpStatus.NOT_FOUND, "User not found");
+        }
+        return Utils.userRepresentationToUserResponse(userRepresentation);
+    }
+
+    /**
+     * Get the profile picture URL of a user.
+     *
+     * @param user User
+     * @return Profile picture URL, or null if the user has none
+     */
+    private String getProfilePictureUrl(BaseUserResponse user) {
+        return user instanceof RecruiterCandidate recruiterCandidate ? recruiterCandidate.getProfilePictureUrl() : null;
+    }
+
+    /**
+     * Get the CV URL of a user.
+     *
+     * @param user User
+     * @return CV URL, or null if the user has none
+     */
+    private String getCvUrl(BaseUserResponse user) {
+        return user instanceof CandidateUserResponse candidate ? candidate.getCvUrl() : null;
+    }
+
+    /**
+     * Delete files that are no longer referenced, only logging the errors.
+     *
+     * @param id           User id
+     * @param objectNames  Names of the files
+     * @param isPublicFile True if the files are public, false otherwise
+     */
+    private void deleteQuietly(String id, Collection<String> objectNames, boolean isPublicFile) {
+        try {
+            minioService.deleteFiles(id, objectNames, isPublicFile);
+        } catch (HttpClientErrorException | MinioException | IOException | NoSuchAlgorithmException | InvalidKeyException e) {
+            logger.warn("Could not delete previous files: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Delete a staged upload, only logging the errors since MinIO expires the staged uploads anyway.
+     *
+     * @param id         User id
+     * @param uploadName Name of the upload
+     */
+    private void deleteUploadQuietly(String id, String uploadName) {
+        try {
+            minioService.deleteUpload(id, uploadName);
+        } catch (MinioException | IOException | NoSuchAlgorithmException | InvalidKeyException e) {
+            logger.warn("Could not delete the staged upload: {}", e.getMessage());
+        }
+    }
+}
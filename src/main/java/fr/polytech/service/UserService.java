@@ -2,6 +2,9 @@ package fr.polytech.service;
 
 import com.auth0.jwt.JWT;
 import com.auth0.jwt.interfaces.DecodedJWT;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.polytech.Util.RecruiterSearchIndex;
+import fr.polytech.Util.TtlCache;
 import fr.polytech.Util.Utils;
 import fr.polytech.model.aux.*;
 import fr.polytech.model.request.RegisterDTO;
@@ -16,6 +19,7 @@ import fr.polytech.model.response.user.detailed.CandidateUserResponseDetailed;
 import fr.polytech.model.response.user.detailed.DetailedBaseUserResponse;
 import fr.polytech.model.response.user.detailed.RecruiterUserResponseDetailed;
 import jakarta.ws.rs.core.Response;
+import org.keycloak.admin.client.CreatedResponseUtil;
 import org.keycloak.admin.client.Keycloak;
 import org.keycloak.admin.client.resource.UserResource;
 import org.keycloak.representations.idm.CredentialRepresentation;
@@ -23,13 +27,18 @@ import org.keycloak.representations.idm.UserRepresentation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.*;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.*;
+import java.util.function.Consumer;
 
 import static fr.polytech.constant.Env.*;
 import static fr.polytech.constant.Roles.CANDIDATE;
@@ -41,22 +50,54 @@ public class UserService {
 
     private final Logger logger = LoggerFactory.getLogger(UserService.class);
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    @Autowired
+    @Qualifier("directRestTemplate")
+    private RestTemplate restTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private CompanyService companyService;
+
+    @Autowired
+    private CandidateDetailsService candidateDetailsService;
+
+    @Autowired
+    private DetailedUserCacheService detailedUserCacheService;
 
     @Autowired
-    private ApiService apiService;
+    private MatchCacheService matchCacheService;
+
+    /**
+     * Number of users read from Keycloak per request when streaming users
+     */
+    public static final int USER_PAGE_SIZE = 100;
 
     /**
      * Keycloak instance
      */
-    private final Keycloak keycloak = Keycloak.getInstance(
-            System.getenv(KEYCLOAK_URI),
-            System.getenv(KEYCLOAK_REALM),
-            System.getenv(ADMIN_USERNAME),
-            System.getenv(ADMIN_PASSWORD),
-            System.getenv(CLIENT_ID)
+    @Autowired
+    private Keycloak keycloak;
+
+    @Autowired
+    private AdminTokenService adminTokenService;
+
+    /**
+     * Cache of the Keycloak representation of users, by user id
+     */
+    private final TtlCache<String, UserRepresentation> userCache = new TtlCache<>(
+            Utils.intFromEnv(USER_CACHE_SIZE, 10000),
+            Utils.intFromEnv(USER_CACHE_TTL_MS, 60000)
     );
 
+    /**
+     * Search index of the recruiters, maintained on register, update and delete, and rebuilt periodically
+     */
+    private final RecruiterSearchIndex recruiterSearchIndex = new RecruiterSearchIndex();
+
+    private volatile boolean recruiterSearchIndexLoaded = false;
+
     /**
      * Login user
      *
@@ -183,6 +224,8 @@ public class UserService {
         Response response = keycloak.realm(System.getenv(KEYCLOAK_REALM)).users().create(userRepresentation);
         logger.info("User created with status " + response.getStatus());
         if (response.getStatus() == 201) {
+            userRepresentation.setId(CreatedResponseUtil.getCreatedId(response));
+            indexRecruiter(userRepresentation);
             return this.loginUser(username, user.getPassword());
         } else {
             throw new HttpClientErrorException(Optional.ofNullable(HttpStatus.resolve(response.getStatus())).orElse(HttpStatus.INTERNAL_SERVER_ERROR), "User already exists");
@@ -225,25 +268,85 @@ public class UserService {
             throw new HttpClientErrorException(HttpStatus.BAD_REQUEST, "User cannot be deleted");
         }
         userResource.remove();
+        userCache.invalidate(id);
+        detailedUserCacheService.invalidate(id);
+        matchCacheService.onUserChanged(UUID.fromString(id));
+        recruiterSearchIndex.remove(UUID.fromString(id));
     }
 
     /**
-     * Get all users
+     * Apply an action to all users, reading them from Keycloak page by page.
+     * Only one page of users is held in memory at a time.
      *
-     * @return List of all users
+     * @param action Action applied to every page of users, without the admin user
      * @throws HttpClientErrorException if the API returns an error or if the admin access token cannot be retrieved
      */
-    public List<BaseUserResponse> getUsers() throws HttpClientErrorException {
+    public void forEachUserPage(Consumer<List<BaseUserResponse>> action) throws HttpClientErrorException {
         logger.info("Getting all users");
-        List<UserRepresentation> users = keycloak.realm(System.getenv(KEYCLOAK_REALM)).users().list();
-        users.removeIf(user -> user.getUsername().equals(System.getenv(ADMIN_USERNAME)));
-        List<BaseUserResponse> userResponses = new ArrayList<>();
+        int first = 0;
+        List<UserRepresentation> users;
+        do {
+            users = keycloak.realm(System.getenv(KEYCLOAK_REALM)).users().list(first, USER_PAGE_SIZE);
+            List<BaseUserResponse> userResponses = new ArrayList<>(users.size());
+            for (UserRepresentation user : users) {
+                if (!user.getUsername().equals(System.getenv(ADMIN_USERNAME))) {
+                    userResponses.add(Utils.userRepresentationToUserResponse(user));
+                }
+            }
+            action.accept(userResponses);
+            first += users.size();
+        } while (users.size() == USER_PAGE_SIZE);
+    }
+
+    /**
+     * Get a page of users
+     *
+     * @param first Index of the first user to get
+     * @param max   Maximum number of users to get
+     * @return List of users of the page
+     * @throws HttpClientErrorException if the paging parameters are invalid
+     */
+    public List<BaseUserResponse> getUsers(int first, int max) throws HttpClientErrorException {
+        logger.info("Getting users from " + first + " (max " + max + ")");
+        if (first < 0 || max <= 0) {
+            throw new HttpClientErrorException(HttpStatus.BAD_REQUEST, "Invalid paging parameters");
+        }
+        List<UserRepresentation> users = keycloak.realm(System.getenv(KEYCLOAK_REALM)).users().list(first, max);
+        List<BaseUserResponse> userResponses = new ArrayList<>(users.size());
         for (UserRepresentation user : users) {
-            userResponses.add(Utils.userRepresentationToUserResponse(user));
+            // The admin user is skipped, so a page can contain one user less than max
+            if (!user.getUsername().equals(System.getenv(ADMIN_USERNAME))) {
+                userResponses.add(Utils.userRepresentationToUserResponse(user));
+            }
         }
         return userResponses;
     }
 
+    /**
+     * Write all users as newline-delimited JSON, reading them from Keycloak page by page.
+     * Only one page of users is held in memory at a time.
+     *
+     * @param outputStream Stream to write the users to
+     * @throws IOException if an error occurs while writing
+     */
+    public void streamUsers(OutputStream outputStream) throws IOException {
+        logger.info("Streaming all users");
+        int first = 0;
+        List<UserRepresentation> users;
+        do {
+            users = keycloak.realm(System.getenv(KEYCLOAK_REALM)).users().list(first, USER_PAGE_SIZE);
+            for (UserRepresentation user : users) {
+                if (user.getUsername().equals(System.getenv(ADMIN_USERNAME))) {
+                    continue;
+                }
+                outputStream.write(objectMapper.writeValueAsBytes(Utils.userRepresentationToUserResponse(user)));
+                outputStream.write('\n');
+            }
+            outputStream.flush();
+            first += users.size();
+        } while (users.size() == USER_PAGE_SIZE);
+    }
+
     /**
      * Get user by id
      *
@@ -252,8 +355,7 @@ public class UserService {
      * @throws HttpClientErrorException if the API returns an error or if the admin access token cannot be retrieved
      */
     public BaseUserResponse getUserById(String id) throws HttpClientErrorException {
-        UserResource userResource = keycloak.realm(System.getenv(KEYCLOAK_REALM)).users().get(id);
-        UserRepresentation userRepresentation = userResource.toRepresentation();
+        UserRepresentation userRepresentation = getUserRepresentation(id);
 
         if (userRepresentation != null) {
             return Utils.userRepresentationToUserResponse(userRepresentation);
@@ -271,85 +373,51 @@ public class UserService {
      * @throws HttpClientErrorException if the API returns an error or if the admin access token cannot be retrieved
      */
     public DetailedBaseUserResponse getDetailedUserById(String id, String token) throws HttpClientErrorException {
-        UserResource userResource = keycloak.realm(System.getenv("KEYCLOAK_REALM")).users().get(id);
-        UserRepresentation userRepresentation = userResource.toRepresentation();
-
-        if (userRepresentation != null) {
-            BaseUserResponse baseUserResponse = Utils.userRepresentationToUserResponse(userRepresentation);
-
-            if (CANDIDATE.equals(baseUserResponse.getRole())) {
-                CandidateUserResponse candidateUserResponse = (CandidateUserResponse) baseUserResponse;
-
-                // Get detailed addressId
-                AddressDTO addressDTO = apiService.makeApiCall(System.getenv(ADDRESS_API_URI) + "/" + candidateUserResponse.getAddressId(), HttpMethod.GET, AddressDTO.class, token, null);
-
-
-                // Get detailed referenceList
-                ArrayList<DetailedReferenceDTO> referenceDTOArrayList = new ArrayList<>();
-
-                if (candidateUserResponse.getReferenceIdList() != null) {
-                    for (UUID referenceId : candidateUserResponse.getReferenceIdList()) {
-                        DetailedReferenceDTO referenceDTO = apiService.makeApiCall(System.getenv(REFERENCE_API_URI) + "/detailed/" + referenceId, HttpMethod.GET, DetailedReferenceDTO.class, token, null);
-                        referenceDTOArrayList.add(referenceDTO);
-                    }
-                }
-
-
-                // Get detailed experienceList
-                ArrayList<DetailedExperienceDTO> experienceDTOArrayList = new ArrayList<>();
-
-                if (candidateUserResponse.getExperienceIdList() != null) {
-                    for (UUID experienceId : candidateUserResponse.getExperienceIdList()) {
-                        DetailedExperienceDTO experienceDTO = apiService.makeApiCall(System.getenv(EXPERIENCE_API_URI) + "/detailed/" + experienceId, HttpMethod.GET, DetailedExperienceDTO.class, token, null);
-                        experienceDTOArrayList.add(experienceDTO);
-                    }
-                }
-
-                // Get detailed availabilityList
-                ArrayList<DetailedAvailabilityDTO> availabilityDTOArrayList = new ArrayList<>();
+        return getDetailedUserById(id, token, false);
+    }
 
-                if (candidateUserResponse.getAvailabilityIdList() != null) {
-                    for (UUID availabilityId : candidateUserResponse.getAvailabilityIdList()) {
-                        DetailedAvailabilityDTO availabilityDTO = apiService.makeApiCall(System.getenv(AVAILABILITY_API_URI) + "/detailed/" + availabilityId, HttpMethod.GET, DetailedAvailabilityDTO.class, token, null);
-                        availabilityDTOArrayList.add(availabilityDTO);
-                    }
-                }
+    /**
+     * Get detailed user by id, from the cache if it was already assembled
+     *
+     * @param id      User id
+     * @param token   Access token
+     * @param partial If true, the details that cannot be retrieved are replaced by error markers instead of failing
+     * @return Detailed user with the specified id
+     * @throws HttpClientErrorException if the API returns an error or if the admin access token cannot be retrieved
+     */
+    public DetailedBaseUserResponse getDetailedUserById(String id, String token, boolean partial) throws HttpClientErrorException {
+        DetailedBaseUserResponse cachedUser = detailedUserCacheService.get(id);
+        if (cachedUser != null) {
+            return cachedUser;
+        }
 
-                // Get detailed reviewList
-                ArrayList<DetailedReviewDTO> reviewDTOArrayList = new ArrayList<>();
+        long generation = detailedUserCacheService.getGeneration();
+        DetailedBaseUserResponse detailedUser = assembleDetailedUser(id, token, partial);
 
-                if (candidateUserResponse.getReviewIdList() != null) {
-                    for (UUID reviewId : candidateUserResponse.getReviewIdList()) {
-                        DetailedReviewDTO reviewDTO = apiService.makeApiCall(System.getenv(REVIEW_API_URI) + "/detailed/" + reviewId, HttpMethod.GET, DetailedReviewDTO.class, token, null);
-                        reviewDTOArrayList.add(reviewDTO);
-                    }
-                }
+        // Incomplete users are not cached
+        if (!(detailedUser instanceof CandidateUserResponseDetailed candidate && candidate.getErrors() != null)) {
+            detailedUserCacheService.put(id, detailedUser, generation);
+        }
+        return detailedUser;
+    }
 
-                CandidateUserResponseDetailed candidateUserResponseDetailed = new CandidateUserResponseDetailed(
-                        candidateUserResponse.getId(),
-                        candidateUserResponse.getEmail(),
-                        candidateUserResponse.getFirstName(),
-                        candidateUserResponse.getLastName(),
-                        candidateUserResponse.getUsername(),
-                        candidateUserResponse.getRole(),
-                        candidateUserResponse.getIsRegistered(),
-                        candidateUserResponse.getGender(),
-                        candidateUserResponse.getBirthdate(),
-                        candidateUserResponse.getCitizenship(),
-                        candidateUserResponse.getPhone(),
-                        addressDTO,
-                        candidateUserResponse.getProfilePictureUrl(),
-                        candidateUserResponse.getToBeRemoved(),
-                        candidateUserResponse.getCvUrl(),
-                        candidateUserResponse.getShortBio(),
-                        referenceDTOArrayList,
-                        experienceDTOArrayList,
-                        availabilityDTOArrayList,
-                        reviewDTOArrayList
-                );
+    /**
+     * Assemble detailed user from Keycloak and the other APIs
+     *
+     * @param id      User id
+     * @param token   Access token
+     * @param partial If true, the details that cannot be retrieved are replaced by error markers instead of failing
+     * @return Detailed user with the specified id
+     * @throws HttpClientErrorException if the API returns an error or if the admin access token cannot be retrieved
+     */
+    private DetailedBaseUserResponse assembleDetailedUser(String id, String token, boolean partial) throws HttpClientErrorException {
+        UserRepresentation userRepresentation = getUserRepresentation(id);
 
-                return candidateUserResponseDetailed;
+        if (userRepresentation != null) {
+            BaseUserResponse baseUserResponse = Utils.userRepresentationToUserResponse(userRepresentation);
 
+            if (CANDIDATE.equals(baseUserResponse.getRole())) {
+                return candidateDetailsService.getCandidateDetails((CandidateUserResponse) baseUserResponse, token, partial);
             } else if (RECRUITER.equals(baseUserResponse.getRole())) {
                 RecruiterUserResponse recruiterUserResponse = (RecruiterUserResponse) baseUserResponse;
 
@@ -417,9 +485,23 @@ public class UserService {
      * @throws HttpClientErrorException if the API returns an error or if the admin access token cannot be retrieved
      */
     public BaseUserResponse updateUser(String id, UpdateDTO updatedUser) throws HttpClientErrorException {
+        return updateUser(id, updatedUser, getKeycloakUserResource(id).toRepresentation());
+    }
+
+    /**
+     * Update user without overriding all attributes, from a representation that was just read from Keycloak
+     *
+     * @param id                 User id
+     * @param updatedUser        User to update
+     * @param userRepresentation Current representation of the user, modified by the update, that must not be cached
+     * @return Updated user
+     * @throws HttpClientErrorException if the API returns an error or if the admin access token cannot be retrieved
+     */
+    BaseUserResponse updateUser(String id, UpdateDTO updatedUser, UserRepresentation userRepresentation) throws HttpClientErrorException {
         logger.info("Updating user with ID " + id);
-        UserResource userResource = getKeycloakUserResource(id);
-        UserRepresentation userRepresentation = userResource.toRepresentation();
+        if (userRepresentation == null) {
+            throw new HttpClientErrorException(HttpStatus.NOT_FOUND, "User not found");
+        }
         Map<String, List<String>> previousAttributes = userRepresentation.getAttributes();
 
         if (previousAttributes == null) {
@@ -435,11 +517,13 @@ public class UserService {
         userRepresentation.setAttributes(updatedAttributes);
 
         if (updatedUser.getUsername() != null) {
-            List<UserRepresentation> existingUsers = keycloak.realm(System.getenv(KEYCLOAK_REALM)).users().search(updatedUser.getUsername());
-            if (!existingUsers.isEmpty()) {
+            // Keycloak stores usernames in lowercase
+            String username = updatedUser.getUsername().toLowerCase(Locale.ROOT);
+            List<UserRepresentation> existingUsers = keycloak.realm(System.getenv(KEYCLOAK_REALM)).users().search(username, true);
+            if (existingUsers.stream().anyMatch(existingUser -> !id.equals(existingUser.getId()))) {
                 throw new HttpClientErrorException(HttpStatus.CONFLICT, "Username already exists");
             } else {
-                userRepresentation.setUsername(updatedUser.getUsername());
+                userRepresentation.setUsername(username);
             }
         } else if (updatedUser.getFirstName() != null) {
             userRepresentation.setFirstName(updatedUser.getFirstName());
@@ -448,8 +532,15 @@ public class UserService {
         }
 
         // Call Keycloak to update the user
-        userResource.update(userRepresentation);
-        return Utils.userRepresentationToUserResponse(getKeycloakUserResource(id).toRepresentation());
+        userCache.invalidate(id);
+        getKeycloakUserResource(id).update(userRepresentation);
+
+        // The merged representation is what Keycloak now stores, no need to read it again
+        userCache.put(id, userRepresentation);
+        detailedUserCacheService.invalidate(id);
+        matchCacheService.onUserChanged(UUID.fromString(id));
+        indexRecruiter(userRepresentation);
+        return Utils.userRepresentationToUserResponse(userRepresentation);
     }
 
     /**
@@ -459,7 +550,7 @@ public class UserService {
      * @param previousAttributes       Map of String and List of String - Previous attributes
      * @return Map of String and List of String containing the attributes to update
      */
-    private Map<String, List<String>> getAttributesToUpdate(UserRepresentation updateUserRepresentation, Map<String, List<String>> previousAttributes) {
+    Map<String, List<String>> getAttributesToUpdate(UserRepresentation updateUserRepresentation, Map<String, List<String>> previousAttributes) {
         Map<String, List<String>> newAttributes = updateUserRepresentation.getAttributes();
         Map<String, List<String>> oldAttributes = new HashMap<>();
 
@@ -486,6 +577,46 @@ public class UserService {
         return oldAttributes;
     }
 
+    /**
+     * Get the representation of a user, from the cache if possible.
+     * The returned representation is shared and must not be modified.
+     *
+     * @param id User id
+     * @return UserRepresentation of the user
+     */
+    UserRepresentation getUserRepresentation(String id) {
+        UserRepresentation userRepresentation = userCache.get(id);
+        if (userRepresentation != null) {
+            return userRepresentation;
+        }
+        userRepresentation = getFreshUserRepresentation(id);
+        if (userRepresentation != null) {
+            userCache.put(id, userRepresentation);
+        }
+        return userRepresentation;
+    }
+
+    /**
+     * Get the representation of a user from Keycloak, bypassing the cache.
+     * Read-modify-write paths use it so that they never work on a stale representation. The returned instance is not
+     * cached, so it can be modified: updateUser caches it only once Keycloak accepted the update.
+     *
+     * @param id User id
+     * @return UserRepresentation of the user
+     */
+    UserRepresentation getFreshUserRepresentation(String id) {
+        return getKeycloakUserResource(id).toRepresentation();
+    }
+
+    /**
+     * Evict a user from the cache of this instance, when it was updated elsewhere.
+     *
+     * @param id User id
+     */
+    public void evictUser(String id) {
+        userCache.invalidate(id);
+    }
+
     /**
      * Get User Resource from Keycloak
      *
@@ -496,6 +627,15 @@ public class UserService {
         return keycloak.realm(System.getenv(KEYCLOAK_REALM)).users().get(id);
     }
 
+    /**
+     * Get an access token of the admin account, used for service-to-service calls
+     *
+     * @return String - Bearer access token
+     */
+    String getAdminAccessToken() {
+        return adminTokenService.getAccessToken();
+    }
+
     /**
      * Check if the "sub" field of the access token matches the user id
      *
@@ -525,46 +665,31 @@ public class UserService {
         if (firstName == null && lastName == null) {
             throw new HttpClientErrorException(HttpStatus.BAD_REQUEST, "Missing parameters");
         }
-        List<UserRepresentation> users = keycloak.realm(System.getenv(KEYCLOAK_REALM)).users().list();
-        // Remove the master user
-        users.removeIf(user -> user.getUsername().equals(System.getenv(ADMIN_USERNAME)));
-        // Remove all users that are not recruiters
-        users.removeIf(user -> {
-            Map<String, List<String>> attributes = user.getAttributes();
-            if (attributes == null) {
-                return true;
-            }
-            List<String> role = attributes.get("role");
-            return role == null || !role.get(0).equals(RECRUITER);
-        });
+        if (!recruiterSearchIndexLoaded) {
+            rebuildRecruiterSearchIndex();
+        }
 
-        users.removeIf(user ->
-                (firstName != null && !user.getFirstName().toLowerCase().contains(firstName.toLowerCase())) ||
-                        (lastName != null && !user.getLastName().toLowerCase().contains(lastName.toLowerCase()))
-        );
+        // Search recruiters whose names contain the parameters
+        List<RecruiterUserResponse> recruiterUserResponses = recruiterSearchIndex.search(firstName, lastName);
 
-        // Convert UserRepresentation to RecruiterUserResponse
-        List<RecruiterUserResponse> recruiterUserResponses = users
-                .stream()
-                .map(Utils::userRepresentationToUserResponse)
-                .map(user -> (RecruiterUserResponse) user)
-                .toList();
+        // Get companies from company API, each company only once
+        Map<UUID, CompanyDTO> companies = companyService.getCompanies(
+                recruiterUserResponses.stream().map(RecruiterUserResponse::getCompanyId).filter(Objects::nonNull).toList(),
+                token
+        );
 
-        // Get company from company API
         List<SearchedRecruiter> searchedRecruiters = new ArrayList<>();
         for (RecruiterUserResponse recruiter : recruiterUserResponses) {
             UUID companyId = recruiter.getCompanyId();
             if (companyId == null) {
                 continue;
             }
-
-            // Request company API
-            CompanyDTO company = apiService.makeApiCall(System.getenv(COMPANY_API_URI) + "/" + companyId, HttpMethod.GET, CompanyDTO.class, token, null);
+            CompanyDTO company = companies.get(companyId);
 
             // Create SearchedRecruiter object
             SearchedRecruiter searchedRecruiter = new SearchedRecruiter();
             searchedRecruiter.setRecruiterId(recruiter.getId());
-            searchedRecruiter.setProfilePictureUrl(recruiter.getProfilePictureUrl());
+            searchedRecruiter.setProfilePictureUrl(Utils.profilePictureThumbnailUrl(recruiter.getProfilePictureUrl()));
             searchedRecruiter.setFirstName(recruiter.getFirstName());
             searchedRecruiter.setLastName(recruiter.getLastName());
             searchedRecruiter.setCompany(company);
@@ -573,4 +698,45 @@ public class UserService {
 
         return searchedRecruiters;
     }
+
+    /**
+     * Rebuild the recruiter search index from all the users of the realm.
+     * It runs at startup and then periodically, to catch changes made outside of this service.
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${RECRUITER_INDEX_REBUILD_MS:900000}")
+    public void rebuildRecruiterSearchIndex() {
+        logger.info("Rebuilding recruiter search index");
+        try {
+            List<RecruiterUserResponse> recruiters = new ArrayList<>();
+            for (UserRepresentation user : keycloak.realm(System.getenv(KEYCLOAK_REALM)).users().list()) {
+                if (Utils.userRepresentationToUserResponse(user) instanceof RecruiterUserResponse recruiter) {
+                    recruiters.add(recruiter);
+                }
+            }
+            recruiterSearchIndex.replaceAll(recruiters);
+            recruiterSearchIndexLoaded = true;
+            logger.info("Recruiter search index rebuilt with {} recruiters", recruiters.size());
+        } catch (RuntimeException e) {
+            logger.error("Error while rebuilding recruiter search index", e);
+        }
+    }
+
+    /**
+     * Add, update or remove a user in the recruiter search index depending on its role
+     *
+     * @param userRepresentation UserRepresentation of the user
+     */
+    private void indexRecruiter(UserRepresentation userRepresentation) {
+        // Indexing must not fail the write path, the periodic rebuild will catch up
+        try {
+            BaseUserResponse user = Utils.userRepresentationToUserResponse(userRepresentation);
+            if (user instanceof RecruiterUserResponse recruiter) {
+                recruiterSearchIndex.put(recruiter);
+            } else {
+                recruiterSearchIndex.remove(user.getId());
+            }
+        } catch (RuntimeException e) {
+            logger.error("Error while indexing user " + userRepresentation.getId(), e);
+        }
+    }
 }
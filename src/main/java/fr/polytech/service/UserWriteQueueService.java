@@ -0,0 +1,239 @@
+package fr.polytech.service;
+
+import fr.polytech.Util.Utils;
+import fr.polytech.model.request.UpdateDTO;
+import fr.polytech.model.response.user.BaseUserResponse;
+import fr.polytech.model.response.user.CandidateUserResponse;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Per-user write queue for the id lists of the candidates (references, experiences, availabilities, reviews).
+ * Mutations of the same user are serialised: the first waiting thread applies every pending mutation of the user
+ * with a single read and a single Keycloak update, while the other threads wait for the result. Users are
+ * independent, there is no global lock.
+ */
+@Service
+public class UserWriteQueueService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserWriteQueueService.class);
+
+    @Autowired
+    private UserService userService;
+
+    /**
+     * Id lists of a candidate
+     */
+    public enum UserList {
+        REFERENCE("Reference", CandidateUserResponse::getReferenceIdList, UpdateDTO::setReferenceIdList),
+        EXPERIENCE("Experience", CandidateUserResponse::getExperienceIdList, UpdateDTO::setExperienceIdList),
+        AVAILABILITY("Availability", CandidateUserResponse::getAvailabilityIdList, UpdateDTO::setAvailabilityIdList),
+        REVIEW("Review", CandidateUserResponse::getReviewIdList, UpdateDTO::setReviewIdList);
+
+        private final String label;
+        private final Function<CandidateUserResponse, List<UUID>> getter;
+        private final BiConsumer<UpdateDTO, List<UUID>> setter;
+
+        UserList(String label, Function<CandidateUserResponse, List<UUID>> getter, BiConsumer<UpdateDTO, List<UUID>> setter) {
+            this.label = label;
+            this.getter = getter;
+            this.setter = setter;
+        }
+    }
+
+    /**
+     * Addition or removal of an id in a list, completed with the updated user
+     */
+    private static class Mutation {
+        private final UserList list;
+        private final UUID value;
+        private final boolean add;
+        private final CompletableFuture<BaseUserResponse> result = new CompletableFuture<>();
+
+        private Mutation(UserList list, UUID value, boolean add) {
+            this.list = list;
+            this.value = value;
+            this.add = add;
+        }
+    }
+
+    /**
+     * Pending mutations of a user
+     */
+    private static class UserQueue {
+        private final Queue<Mutation> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        // Number of threads using the queue, only modified inside queues.compute
+        private int users;
+    }
+
+    private final Map<String, UserQueue> queues = new ConcurrentHashMap<>();
+
+    /**
+     * Add an id to a list of a candidate, unless it is already in it.
+     *
+     * @param id    User id of the candidate
+     * @param list  List to update
+     * @param value Id to add
+     * @return Updated user
+     * @throws HttpClientErrorException if the user is not found or is not a candidate, or if the update fails
+     */
+    public BaseUserResponse addToList(String id, UserList list, UUID value) throws HttpClientErrorException {
+        return submit(id, List.of(new Mutation(list, value, true)));
+    }
+
+    /**
+     * Add ids to a list of a candidate, skipping the ones already in it.
+     *
+     * @param id     User id of the candidate
+     * @param list   List to update
+     * @param values Ids to add
+     * @return Updated user
+     * @throws HttpClientErrorException if the user is not found or is not a candidate, or if the update fails
+     */
+    public BaseUserResponse addAllToList(String id, UserList list, Collection<UUID> values) throws HttpClientErrorException {
+        return submit(id, values.stream().map(value -> new Mutation(list, value, true)).toList());
+    }
+
+    /**
+     * Remove an id from a list of a candidate.
+     *
+     * @param id    User id of the candidate
+     * @param list  List to update
+     * @param value Id to remove
+     * @return Updated user
+     * @throws HttpClientErrorException with NOT_FOUND if the id is not in the list, or if the update fails
+     */
+    public BaseUserResponse removeFromList(String id, UserList list, UUID value) throws HttpClientErrorException {
+        return submit(id, List.of(new Mutation(list, value, false)));
+    }
+
+    /**
+     * Queue mutations of a user and wait until they are applied.
+     *
+     * @param id        User id
+     * @param mutations Mutations to apply
+     * @return Updated user
+     * @throws HttpClientErrorException if one of the mutations cannot be applied
+     */
+    private BaseUserResponse submit(String id, List<Mutation> mutations) throws HttpClientErrorException {
+        UserQueue queue = queues.compute(id, (key, existing) -> {
+            UserQueue userQueue = existing == null ? new UserQueue() : existing;
+            userQueue.users++;
+            return userQueue;
+        });
+        try {
+            queue.pending.addAll(mutations);
+            drain(id, queue);
+
+            BaseUserResponse updatedUser = null;
+            for (Mutation mutation : mutations) {
+                updatedUser = Utils.join(mutation.result);
+            }
+            return updatedUser;
+        } finally {
+            queues.computeIfPresent(id, (key, userQueue) -> --userQueue.users == 0 ? null : userQueue);
+        }
+    }
+
+    /**
+     * Apply the pending mutations of a user, unless another thread is already applying them.
+     *
+     * @param id    User id
+     * @param queue Queue of the user
+     */
+    private void drain(String id, UserQueue queue) {
+        // Mutations queued while another thread releases the queue are applied by this loop
+        while (!queue.pending.isEmpty() && queue.draining.compareAndSet(false, true)) {
+            try {
+                List<Mutation> batch = new ArrayList<>();
+                Mutation mutation;
+                while ((mutation = queue.pending.poll()) != null) {
+                    batch.add(mutation);
+                }
+                if (!batch.isEmpty()) {
+                    apply(id, batch);
+                }
+            } finally {
+                queue.draining.set(false);
+            }
+        }
+    }
+
+    /**
+     * Apply mutations of a user with a single read and a single update, the representation read being reused by
+     * the update.
+     *
+     * @param id    User id
+     * @param batch Mutations to apply
+     */
+    private void apply(String id, List<Mutation> batch) {
+        try {
+            UserRepresentation userRepresentation = userService.getFreshUserRepresentation(id);
+            if (userRepresentation == null) {
+                throw new HttpClientErrorException(HttpStatus.NOT_FOUND, "User not found");
+            }
+            if (!(Utils.userRepresentationToUserResponse(userRepresentation) instanceof CandidateUserResponse candidate)) {
+                throw new HttpClientErrorException(HttpStatus.BAD_REQUEST, "User is not a candidate");
+            }
+
+            // Lists that are not modified are sent unchanged, as they were read
+            Map<UserList, List<UUID>> lists = new EnumMap<>(UserList.class);
+            for (UserList list : UserList.values()) {
+                List<UUID> values = list.getter.apply(candidate);
+                lists.put(list, values == null ? null : new ArrayList<>(values));
+            }
+
+            List<Mutation> applied = new ArrayList<>();
+            boolean changed = false;
+            for (Mutation mutation : batch) {
+                List<UUID> values = lists.get(mutation.list);
+                if (mutation.add) {
+                    if (values == null) {
+                        values = new ArrayList<>();
+                        lists.put(mutation.list, values);
+                    }
+                    // Adding an id already in the list is a no-op, so that a retried addition is not duplicated
+                    if (!values.contains(mutation.value)) {
+                        values.add(mutation.value);
+                        changed = true;
+                    }
+                    applied.add(mutation);
+                } else if (values != null && values.remove(mutation.value)) {
+                    applied.add(mutation);
+                    changed = true;
+                } else {
+                    mutation.result.completeExceptionally(new HttpClientErrorException(HttpStatus.NOT_FOUND, mutation.list.label + " not found"));
+                }
+            }
+            if (!changed) {
+                BaseUserResponse user = Utils.userRepresentationToUserResponse(userRepresentation);
+                applied.forEach(mutation -> mutation.result.complete(user));
+                return;
+            }
+
+            UpdateDTO updateDTO = new UpdateDTO();
+            lists.forEach((list, values) -> list.setter.accept(updateDTO, values));
+            if (applied.size() > 1) {
+                logger.info("Applying {} list mutations to user {} in one update", applied.size(), id);
+            }
+            BaseUserResponse updatedUser = userService.updateUser(id, updateDTO, userRepresentation);
+            applied.forEach(mutation -> mutation.result.complete(updatedUser));
+        } catch (RuntimeException e) {
+            batch.forEach(mutation -> mutation.result.completeExceptionally(e));
+        }
+    }
+}
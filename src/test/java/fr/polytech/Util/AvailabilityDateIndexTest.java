@@ -0,0 +1,136 @@
+package fr.polytech.Util;
+
+import fr.polytech.model.AvailabilityDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AvailabilityDateIndexTest {
+
+    private static final long DAY = 24 * 3600 * 1000L;
+
+    private static AvailabilityDTO availability(Long start, Long end) {
+        AvailabilityDTO availability = new AvailabilityDTO();
+        availability.setId(UUID.randomUUID());
+        availability.setStartDate(start == null ? null : new Date(start));
+        availability.setEndDate(end == null ? null : new Date(end));
+        return availability;
+    }
+
+    private static Map<UUID, List<AvailabilityDTO>> find(AvailabilityDateIndex index, long start, long end) {
+        return index.findCovering(new Date(start), new Date(end));
+    }
+
+    @Test
+    void availabilityEqualToThePeriodCoversIt() {
+        UUID candidate = UUID.randomUUID();
+        AvailabilityDTO availability = availability(10 * DAY, 20 * DAY);
+        AvailabilityDateIndex index = new AvailabilityDateIndex(Map.of(candidate, List.of(availability)));
+
+        assertEquals(Map.of(candidate, List.of(availability)), find(index, 10 * DAY, 20 * DAY));
+    }
+
+    @Test
+    void singleInstantAvailabilityCoversTheSameInstantOnly() {
+        UUID candidate = UUID.randomUUID();
+        AvailabilityDTO availability = availability(10 * DAY, 10 * DAY);
+        AvailabilityDateIndex index = new AvailabilityDateIndex(Map.of(candidate, List.of(availability)));
+
+        assertEquals(Map.of(candidate, List.of(availability)), find(index, 10 * DAY, 10 * DAY));
+        assertTrue(find(index, 10 * DAY, 10 * DAY + 1).isEmpty());
+        assertTrue(find(index, 10 * DAY - 1, 10 * DAY).isEmpty());
+    }
+
+    @Test
+    void boundariesAreInclusive() {
+        UUID candidate = UUID.randomUUID();
+        AvailabilityDateIndex index = new AvailabilityDateIndex(Map.of(candidate, List.of(availability(10 * DAY, 20 * DAY))));
+
+        assertEquals(1, find(index, 10 * DAY, 10 * DAY).size());
+        assertEquals(1, find(index, 20 * DAY, 20 * DAY).size());
+        // Starting one millisecond too late or ending one millisecond too early does not cover the period
+        assertTrue(find(index, 10 * DAY - 1, 15 * DAY).isEmpty());
+        assertTrue(find(index, 15 * DAY, 20 * DAY + 1).isEmpty());
+    }
+
+    @Test
+    void availabilitiesWithoutDatesNeverMatch() {
+        UUID candidate = UUID.randomUUID();
+        AvailabilityDateIndex index = new AvailabilityDateIndex(Map.of(candidate, List.of(
+                availability(null, 20 * DAY),
+                availability(10 * DAY, null),
+                availability(null, null)
+        )));
+
+        assertEquals(0, index.size());
+        assertTrue(find(index, 15 * DAY, 16 * DAY).isEmpty());
+    }
+
+    @Test
+    void periodWithoutDatesMatchesNothing() {
+        AvailabilityDateIndex index = new AvailabilityDateIndex(Map.of(UUID.randomUUID(), List.of(availability(0L, 100 * DAY))));
+
+        assertTrue(index.findCovering(null, new Date(DAY)).isEmpty());
+        assertTrue(index.findCovering(new Date(DAY), null).isEmpty());
+    }
+
+    @Test
+    void emptyIndexMatchesNothing() {
+        AvailabilityDateIndex index = new AvailabilityDateIndex(Map.of());
+
+        assertEquals(0, index.size());
+        assertTrue(find(index, 0, DAY).isEmpty());
+    }
+
+    @Test
+    void availabilitiesAreGroupedByCandidate() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        AvailabilityDTO firstSummer = availability(0L, 90 * DAY);
+        AvailabilityDTO firstJuly = availability(30 * DAY, 60 * DAY);
+        AvailabilityDTO secondSummer = availability(10 * DAY, 80 * DAY);
+        AvailabilityDTO secondWinter = availability(200 * DAY, 260 * DAY);
+        AvailabilityDateIndex index = new AvailabilityDateIndex(Map.of(
+                first, List.of(firstSummer, firstJuly),
+                second, List.of(secondSummer, secondWinter)
+        ));
+
+        Map<UUID, List<AvailabilityDTO>> covering = find(index, 40 * DAY, 50 * DAY);
+
+        assertEquals(Set.of(first, second), covering.keySet());
+        assertEquals(Set.of(firstSummer, firstJuly), new HashSet<>(covering.get(first)));
+        assertEquals(List.of(secondSummer), covering.get(second));
+    }
+
+    @Test
+    void matchesABruteForceScan() {
+        Random random = new Random(7);
+        Map<UUID, List<AvailabilityDTO>> availabilities = new HashMap<>();
+        for (int i = 0; i < 300; i++) {
+            List<AvailabilityDTO> candidateAvailabilities = new ArrayList<>();
+            for (int j = random.nextInt(4); j > 0; j--) {
+                long start = random.nextInt(365) * DAY;
+                candidateAvailabilities.add(availability(start, start + random.nextInt(120) * DAY));
+            }
+            availabilities.put(UUID.randomUUID(), candidateAvailabilities);
+        }
+        AvailabilityDateIndex index = new AvailabilityDateIndex(availabilities);
+
+        for (int query = 0; query < 200; query++) {
+            long start = random.nextInt(400) * DAY;
+            long end = start + random.nextInt(60) * DAY;
+
+            Map<UUID, Set<AvailabilityDTO>> expected = new HashMap<>();
+            availabilities.forEach((candidate, candidateAvailabilities) -> candidateAvailabilities.stream()
+                    .filter(availability -> availability.getStartDate().getTime() <= start && availability.getEndDate().getTime() >= end)
+                    .forEach(availability -> expected.computeIfAbsent(candidate, key -> new HashSet<>()).add(availability)));
+
+            Map<UUID, Set<AvailabilityDTO>> actual = new HashMap<>();
+            find(index, start, end).forEach((candidate, found) -> actual.put(candidate, new HashSet<>(found)));
+
+            assertEquals(expected, actual);
+        }
+    }
+}
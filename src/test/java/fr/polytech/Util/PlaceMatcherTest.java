@@ -0,0 +1,171 @@
+package fr.polytech.Util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PlaceMatcherTest {
+
+    @Test
+    void overlappingPlacesAreAllFound() {
+        PlaceMatcher matcher = new PlaceMatcher();
+        UUID he = UUID.randomUUID();
+        UUID she = UUID.randomUUID();
+        UUID hers = UUID.randomUUID();
+        UUID his = UUID.randomUUID();
+        matcher.add(he, List.of("he"));
+        matcher.add(she, List.of("she"));
+        matcher.add(hers, List.of("hers"));
+        matcher.add(his, List.of("his"));
+
+        assertEquals(Set.of(he, she, hers), matcher.match("ushers"));
+        assertEquals(Set.of(he, she, his), matcher.match("ahishe"));
+        assertEquals(Set.of(), matcher.match("hi"));
+    }
+
+    @Test
+    void placeSuffixOfAnotherPlaceIsFound() {
+        PlaceMatcher matcher = new PlaceMatcher();
+        UUID saintEtienne = UUID.randomUUID();
+        UUID etienne = UUID.randomUUID();
+        matcher.add(saintEtienne, List.of("saint-etienne"));
+        matcher.add(etienne, List.of("etienne"));
+
+        assertEquals(Set.of(saintEtienne, etienne), matcher.match("1 rue de la Paix, 42000 Saint-Etienne"));
+        assertEquals(Set.of(etienne), matcher.match("avenue Etienne Dolet, Lyon"));
+    }
+
+    @Test
+    void matchingIsCaseInsensitive() {
+        PlaceMatcher matcher = new PlaceMatcher();
+        UUID lyon = UUID.randomUUID();
+        UUID paris = UUID.randomUUID();
+        matcher.add(lyon, List.of("LYON"));
+        matcher.add(paris, List.of("paris"));
+
+        assertEquals(Set.of(lyon), matcher.match("69000 lyon"));
+        assertEquals(Set.of(paris), matcher.match("75001 PARIS"));
+        assertEquals(Set.of(lyon, paris), matcher.match("Lyon ou Paris"));
+    }
+
+    @Test
+    void emptyPlaceMatchesEveryAddress() {
+        PlaceMatcher matcher = new PlaceMatcher();
+        UUID anywhere = UUID.randomUUID();
+        UUID lyon = UUID.randomUUID();
+        matcher.add(anywhere, List.of(""));
+        matcher.add(lyon, List.of("lyon"));
+
+        assertEquals(Set.of(anywhere, lyon), matcher.match("Lyon"));
+        assertEquals(Set.of(anywhere), matcher.match("Paris"));
+        assertEquals(Set.of(anywhere), matcher.match(""));
+        assertEquals(Set.of(anywhere), matcher.match(null));
+    }
+
+    @Test
+    void nullPlacesAreIgnored() {
+        PlaceMatcher matcher = new PlaceMatcher();
+        UUID lyon = UUID.randomUUID();
+        matcher.add(UUID.randomUUID(), null);
+        matcher.add(lyon, Arrays.asList(null, "lyon"));
+
+        assertEquals(Set.of(lyon), matcher.match("Lyon"));
+        assertEquals(Set.of(), matcher.match(null));
+    }
+
+    @Test
+    void sharedPlaceIsKeptForTheOtherAvailability() {
+        PlaceMatcher matcher = new PlaceMatcher();
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        matcher.add(first, List.of("lyon"));
+        matcher.add(second, List.of("Lyon", "paris"));
+        assertEquals(Set.of(first, second), matcher.match("Lyon"));
+
+        matcher.remove(second, List.of("Lyon", "paris"));
+
+        assertEquals(Set.of(first), matcher.match("Lyon"));
+        assertEquals(Set.of(), matcher.match("Paris"));
+    }
+
+    @Test
+    void linksAreRebuiltAfterUpdates() {
+        PlaceMatcher matcher = new PlaceMatcher();
+        UUID he = UUID.randomUUID();
+        matcher.add(he, List.of("he"));
+        assertEquals(Set.of(he), matcher.match("ushers"));
+
+        // "hers" is added after a scan, its output link to "he" and the one of "she" must be built
+        UUID hers = UUID.randomUUID();
+        UUID she = UUID.randomUUID();
+        matcher.add(hers, List.of("hers"));
+        matcher.add(she, List.of("she"));
+        assertEquals(Set.of(he, she, hers), matcher.match("ushers"));
+
+        matcher.remove(he, List.of("he"));
+        assertEquals(Set.of(she, hers), matcher.match("ushers"));
+
+        matcher.remove(she, List.of("she"));
+        matcher.remove(hers, List.of("hers"));
+        assertEquals(Set.of(), matcher.match("ushers"));
+
+        matcher.add(he, List.of("he"));
+        assertEquals(Set.of(he), matcher.match("ushers"));
+    }
+
+    @Test
+    void removingAnUnknownPlaceKeepsTheOthers() {
+        PlaceMatcher matcher = new PlaceMatcher();
+        UUID lyon = UUID.randomUUID();
+        matcher.add(lyon, List.of("lyon"));
+
+        matcher.remove(lyon, List.of("paris", "ly"));
+        matcher.remove(UUID.randomUUID(), List.of("lyon"));
+
+        assertEquals(Set.of(lyon), matcher.match("Lyon"));
+    }
+
+    @Test
+    void matchesABruteForceScan() {
+        Random random = new Random(7);
+        PlaceMatcher matcher = new PlaceMatcher();
+        Map<UUID, List<String>> places = new HashMap<>();
+        for (int i = 0; i < 300; i++) {
+            UUID id = UUID.randomUUID();
+            List<String> availabilityPlaces = new ArrayList<>();
+            for (int j = 1 + random.nextInt(3); j > 0; j--) {
+                availabilityPlaces.add(randomWord(random, 1 + random.nextInt(4)));
+            }
+            places.put(id, availabilityPlaces);
+            matcher.add(id, availabilityPlaces);
+        }
+        // Remove some availabilities so that the scan runs on a trie with emptied nodes
+        for (UUID id : new ArrayList<>(places.keySet())) {
+            if (random.nextInt(4) == 0) {
+                matcher.remove(id, places.remove(id));
+            }
+        }
+
+        for (int i = 0; i < 200; i++) {
+            String address = randomWord(random, 5 + random.nextInt(30));
+            Set<UUID> expected = new HashSet<>();
+            places.forEach((id, availabilityPlaces) -> {
+                if (availabilityPlaces.stream().anyMatch(place -> address.toLowerCase().contains(place.toLowerCase()))) {
+                    expected.add(id);
+                }
+            });
+            assertEquals(expected, matcher.match(address), address);
+        }
+    }
+
+    private static String randomWord(Random random, int length) {
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            char c = (char) ('a' + random.nextInt(3));
+            word.append(random.nextBoolean() ? Character.toUpperCase(c) : c);
+        }
+        return word.toString();
+    }
+}
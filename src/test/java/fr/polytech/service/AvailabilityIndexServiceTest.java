@@ -0,0 +1,163 @@
+package fr.polytech.service;
+
+import fr.polytech.model.AvailabilityDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AvailabilityIndexServiceTest {
+
+    private static final long DAY = 24 * 3600 * 1000L;
+
+    private AvailabilityIndexService indexService;
+
+    private MatchCacheService matchCacheService;
+
+    private static AvailabilityDTO availability(long start, long end, String... places) {
+        AvailabilityDTO availability = new AvailabilityDTO();
+        availability.setId(UUID.randomUUID());
+        availability.setStartDate(new Date(start));
+        availability.setEndDate(new Date(end));
+        availability.setPlaceList(List.of(places));
+        return availability;
+    }
+
+    private Map<UUID, List<AvailabilityDTO>> find(long start, long end) {
+        return indexService.findCovering(new Date(start), new Date(end));
+    }
+
+    @BeforeEach
+    void setUp() {
+        indexService = new AvailabilityIndexService();
+        matchCacheService = new MatchCacheService();
+        ReflectionTestUtils.setField(indexService, "matchCacheService", matchCacheService);
+    }
+
+    @Test
+    void removedAvailabilityIsNoLongerFound() {
+        UUID candidate = UUID.randomUUID();
+        AvailabilityDTO kept = availability(0, 30 * DAY, "Paris");
+        AvailabilityDTO removed = availability(0, 30 * DAY, "Lyon");
+        indexService.addAvailability(candidate, kept);
+        indexService.addAvailability(candidate, removed);
+        assertEquals(2, find(10 * DAY, 20 * DAY).get(candidate).size());
+
+        indexService.removeAvailability(candidate, removed.getId());
+
+        assertEquals(Map.of(candidate, List.of(kept)), find(10 * DAY, 20 * DAY));
+        assertEquals(Set.of(), indexService.findMatchingPlaces("1 rue de Lyon"));
+        assertEquals(Set.of(kept.getId()), indexService.findMatchingPlaces("1 rue de Paris"));
+    }
+
+    @Test
+    void removingTheLastAvailabilityRemovesTheCandidate() {
+        UUID candidate = UUID.randomUUID();
+        AvailabilityDTO availability = availability(0, 30 * DAY, "Paris");
+        indexService.addAvailability(candidate, availability);
+        assertFalse(find(10 * DAY, 20 * DAY).isEmpty());
+
+        indexService.removeAvailability(candidate, availability.getId());
+
+        assertTrue(find(10 * DAY, 20 * DAY).isEmpty());
+        assertTrue(indexService.findMatchingPlaces("Paris").isEmpty());
+    }
+
+    @Test
+    void removingAnUnknownAvailabilityKeepsTheIndex() {
+        UUID candidate = UUID.randomUUID();
+        AvailabilityDTO availability = availability(0, 30 * DAY, "Paris");
+        indexService.addAvailability(candidate, availability);
+
+        indexService.removeAvailability(candidate, UUID.randomUUID());
+        indexService.removeAvailability(UUID.randomUUID(), availability.getId());
+
+        assertEquals(Map.of(candidate, List.of(availability)), find(10 * DAY, 20 * DAY));
+    }
+
+    @Test
+    void updatedAvailabilityReplacesThePreviousDates() {
+        UUID candidate = UUID.randomUUID();
+        AvailabilityDTO availability = availability(0, 30 * DAY, "Paris");
+        indexService.addAvailability(candidate, availability);
+        assertFalse(find(10 * DAY, 20 * DAY).isEmpty());
+
+        AvailabilityDTO updated = availability(40 * DAY, 50 * DAY, "Lyon");
+        updated.setId(availability.getId());
+        indexService.addAvailability(candidate, updated);
+
+        assertTrue(find(10 * DAY, 20 * DAY).isEmpty());
+        assertEquals(Map.of(candidate, List.of(updated)), find(40 * DAY, 50 * DAY));
+        assertTrue(indexService.findMatchingPlaces("Paris").isEmpty());
+        assertEquals(Set.of(updated.getId()), indexService.findMatchingPlaces("Lyon"));
+    }
+
+    @Test
+    void replacedAvailabilitiesAreNoLongerFound() {
+        UUID candidate = UUID.randomUUID();
+        indexService.replaceAvailabilities(candidate, List.of(availability(0, 30 * DAY, "Paris"), availability(0, 30 * DAY, "Lyon")));
+        AvailabilityDTO replacement = availability(40 * DAY, 50 * DAY, "Nice");
+
+        indexService.replaceAvailabilities(candidate, List.of(replacement));
+
+        assertTrue(find(10 * DAY, 20 * DAY).isEmpty());
+        assertEquals(Map.of(candidate, List.of(replacement)), find(40 * DAY, 50 * DAY));
+        assertTrue(indexService.findMatchingPlaces("Paris Lyon").isEmpty());
+        assertEquals(Set.of(replacement.getId()), indexService.findMatchingPlaces("Nice"));
+    }
+
+    @Test
+    void replacingWithNoAvailabilitiesRemovesTheCandidate() {
+        UUID candidate = UUID.randomUUID();
+        UUID other = UUID.randomUUID();
+        AvailabilityDTO otherAvailability = availability(0, 30 * DAY, "Paris");
+        indexService.replaceAvailabilities(candidate, List.of(availability(0, 30 * DAY, "Paris")));
+        indexService.replaceAvailabilities(other, List.of(otherAvailability));
+
+        indexService.replaceAvailabilities(candidate, List.of());
+
+        assertEquals(Map.of(other, List.of(otherAvailability)), find(10 * DAY, 20 * DAY));
+        assertEquals(Set.of(otherAvailability.getId()), indexService.findMatchingPlaces("Paris"));
+    }
+
+    @Test
+    void unchangedAvailabilitiesDoNotInvalidateMatches() {
+        UUID candidate = UUID.randomUUID();
+        AvailabilityDTO availability = availability(0, 30 * DAY, "Paris");
+        indexService.replaceAvailabilities(candidate, List.of(availability));
+        long generation = matchCacheService.getGeneration();
+
+        AvailabilityDTO same = availability(0, 30 * DAY, "Paris");
+        same.setId(availability.getId());
+        same.setJobTitle("Waiter");
+        indexService.replaceAvailabilities(candidate, List.of(same));
+        indexService.addAvailability(candidate, same);
+        indexService.removeAvailability(candidate, UUID.randomUUID());
+        indexService.replaceAvailabilities(UUID.randomUUID(), List.of());
+
+        assertEquals(generation, matchCacheService.getGeneration());
+        assertEquals(Map.of(candidate, List.of(availability)), find(10 * DAY, 20 * DAY));
+    }
+
+    @Test
+    void changedAvailabilitiesInvalidateMatches() {
+        UUID candidate = UUID.randomUUID();
+        AvailabilityDTO availability = availability(0, 30 * DAY, "Paris");
+        indexService.replaceAvailabilities(candidate, List.of(availability));
+        long generation = matchCacheService.getGeneration();
+
+        AvailabilityDTO moved = availability(0, 30 * DAY, "Lyon");
+        moved.setId(availability.getId());
+        indexService.replaceAvailabilities(candidate, List.of(moved));
+
+        assertTrue(matchCacheService.getGeneration() > generation);
+        assertEquals(Set.of(moved.getId()), indexService.findMatchingPlaces("Lyon"));
+    }
+}